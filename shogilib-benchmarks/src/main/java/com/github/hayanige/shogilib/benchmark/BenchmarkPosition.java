@@ -0,0 +1,40 @@
+package com.github.hayanige.shogilib.benchmark;
+
+import com.github.hayanige.shogilib.Position;
+
+/**
+ * The corpus of positions the benchmarks run over. The positions are chosen to cover the typical
+ * phases of a game, because the cost of the hot paths depends on the number of sliders, pieces
+ * in hand and checks.
+ */
+public enum BenchmarkPosition {
+
+  /**
+   * The starting position.
+   */
+  HIRATE(Position.HIRATE_SFEN),
+
+  /**
+   * A middlegame position with many pieces on the board and a few pieces in hand.
+   */
+  MIDDLEGAME("l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1"),
+
+  /**
+   * An endgame position with many pieces in hand, where drops dominate the generated moves.
+   */
+  ENDGAME("R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b RBGSNLP3g3n17p 1");
+
+  private final String sfen;
+
+  BenchmarkPosition(final String sfen) {
+    this.sfen = sfen;
+  }
+
+  public String getSfen() {
+    return sfen;
+  }
+
+  public Position createPosition() {
+    return Position.createPositionFromSfen(sfen);
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.hayanige.shogilib.benchmark;
+
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Position;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of doMove and undoMove. Each invocation plays and reverts all the legal moves of the
+ * position, so the score is divided by the number of the legal moves to get the cost of a move.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DoUndoMoveBenchmark {
+
+  @Param
+  public BenchmarkPosition benchmarkPosition;
+
+  private Position position;
+  private Move[] moves;
+
+  @Setup
+  public void setUp() {
+    position = benchmarkPosition.createPosition();
+    moves = position.getLegalMoves().toArray(new Move[0]);
+  }
+
+  @Benchmark
+  public long doUndoMoves() {
+    long hash = 0;
+    for (Move move : moves) {
+      position.doMove(move);
+      hash ^= position.getZobristHash();
+      position.undoMove();
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,60 @@
+package com.github.hayanige.shogilib.benchmark;
+
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Position;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the move generators, both the list API and the buffer API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGenerationBenchmark {
+
+  @Param
+  public BenchmarkPosition benchmarkPosition;
+
+  private Position position;
+  private final int[] moves = new int[Position.MAX_MOVES];
+
+  @Setup
+  public void setUp() {
+    position = benchmarkPosition.createPosition();
+  }
+
+  @Benchmark
+  public List<Move> getLegalMoves() {
+    return position.getLegalMoves();
+  }
+
+  @Benchmark
+  public List<Move> getPseudoLegalMoves() {
+    return position.getPseudoLegalMoves();
+  }
+
+  @Benchmark
+  public int generateLegalMoves() {
+    return position.generateLegalMoves(moves);
+  }
+
+  @Benchmark
+  public int generatePseudoLegalMoves() {
+    return position.generatePseudoLegalMoves(moves);
+  }
+}
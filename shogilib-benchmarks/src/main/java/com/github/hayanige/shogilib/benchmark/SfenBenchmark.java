@@ -0,0 +1,47 @@
+package com.github.hayanige.shogilib.benchmark;
+
+import com.github.hayanige.shogilib.Position;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of exporting and parsing SFEN.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SfenBenchmark {
+
+  @Param
+  public BenchmarkPosition benchmarkPosition;
+
+  private Position position;
+
+  @Setup
+  public void setUp() {
+    position = benchmarkPosition.createPosition();
+  }
+
+  @Benchmark
+  public String getSfen() {
+    return position.getSfen();
+  }
+
+  @Benchmark
+  public Position createPositionFromSfen() {
+    return Position.createPositionFromSfen(benchmarkPosition.getSfen());
+  }
+}
@@ -0,0 +1,91 @@
+package com.github.hayanige.shogilib.bitboard;
+
+import com.github.hayanige.shogilib.Color;
+import com.github.hayanige.shogilib.Square;
+import com.github.hayanige.shogilib.benchmark.BenchmarkPosition;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the attack queries and the magic bitboard lookups. It is placed in the bitboard
+ * package to call the package-private attack queries of the position. Each invocation queries
+ * all the squares of the board.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AttackBenchmark {
+
+  @Param
+  public BenchmarkPosition benchmarkPosition;
+
+  private PositionBitboardImpl position;
+  private final Bitboard attackers = new Bitboard();
+
+  @Setup
+  public void setUp() {
+    position = (PositionBitboardImpl) benchmarkPosition.createPosition();
+  }
+
+  @Benchmark
+  public long getAttackersTo() {
+    long result = 0;
+    for (Square square : Square.getSquares()) {
+      result ^= position.getAttackersTo(Color.BLACK, square).merge();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long getAttackersToInPlace() {
+    Bitboard occupied = position.getOccupiedBitboard();
+    long result = 0;
+    for (Square square : Square.getSquares()) {
+      result ^= position.getAttackersTo(Color.BLACK, square, occupied, attackers).merge();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long getBishopSlidingEffectBitboard() {
+    Bitboard occupied = position.getOccupiedBitboard();
+    long result = 0;
+    for (Square square : Square.getSquares()) {
+      result ^= BitboardConstants.getBishopSlidingEffectBitboard(square, occupied).merge();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long getRookSlidingEffectBitboard() {
+    Bitboard occupied = position.getOccupiedBitboard();
+    long result = 0;
+    for (Square square : Square.getSquares()) {
+      result ^= BitboardConstants.getRookSlidingEffectBitboard(square, occupied).merge();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long getLanceSlidingEffectBitboard() {
+    Bitboard occupied = position.getOccupiedBitboard();
+    long result = 0;
+    for (Square square : Square.getSquares()) {
+      result ^= BitboardConstants.getLanceSlidingEffectBitboard(Color.BLACK, square, occupied).merge();
+    }
+    return result;
+  }
+}
@@ -64,6 +64,49 @@ public class Hand {
       ROOK, BISHOP, GOLD, SILVER, KNIGHT, LANCE, PAWN
   };
 
+  /**
+   * Creates an empty hand.
+   */
+  public Hand() {
+  }
+
+  /**
+   * Creates a copy of the given hand.
+   *
+   * @param hand  the hand to be copied
+   */
+  public Hand(final Hand hand) {
+    this.hand = hand.hand;
+  }
+
+  /**
+   * Returns the hand from the 32-bit representation returned by {@link #toInt()}.
+   *
+   * @param hand  the 32-bit representation of the hand
+   * @return  the hand
+   */
+  public static Hand valueOf(final int hand) {
+    Hand result = new Hand();
+    result.hand = hand;
+    return result;
+  }
+
+  /**
+   * Returns the 32-bit representation of this hand.
+   *
+   * @return  the 32-bit representation of this hand
+   */
+  public int toInt() {
+    return hand;
+  }
+
+  /**
+   * Removes all the pieces from this hand.
+   */
+  public void clear() {
+    hand = 0;
+  }
+
   /**
    * Is there any piece in the hand?
    *
@@ -149,6 +192,32 @@ public class Hand {
     return sb.toString();
   }
 
+  /**
+   * Writes the USI string of this hand into the buffer as ASCII bytes without creating any object.
+   *
+   * @param buffer  the buffer
+   * @param offset  the offset in the buffer
+   * @param lowercase true to write the pieces in lower case (for white)
+   * @return  the offset next to the written bytes
+   */
+  public int writeUSI(final byte[] buffer, int offset, final boolean lowercase) {
+    for (PieceType pt : PIECE_USI_ORDER) {
+      int count = count(pt);
+      if (count == 0) {
+        continue;
+      }
+      if (count >= 10) {
+        buffer[offset++] = (byte) ('0' + count / 10);
+      }
+      if (count > 1) {
+        buffer[offset++] = (byte) ('0' + count % 10);
+      }
+      char c = pt.toString().charAt(0);
+      buffer[offset++] = (byte) (lowercase ? Character.toLowerCase(c) : c);
+    }
+    return offset;
+  }
+
   /**
    * Returns the pretty output in Japanese
    *
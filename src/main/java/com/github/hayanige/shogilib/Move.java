@@ -2,6 +2,9 @@ package com.github.hayanige.shogilib;
 
 /**
  * A piece movement.
+ * <p>
+ * All valid moves are interned. The factory methods always return the same instance for the same
+ * move, so moves can be compared with {@code ==} as well as {@link Move#equals(Object)}.
  */
 public class Move implements Comparable {
 
@@ -21,6 +24,9 @@ public class Move implements Comparable {
    */
   private final int move;
 
+  // canonical instances of all valid moves, indexed by the 16-bit representation
+  private static final Move[] MOVES = new Move[1 << 16];
+
   private Move() {
     move = NONE;
   }
@@ -32,22 +38,44 @@ public class Move implements Comparable {
   /**
    * The Invalid Move
    */
-  public static Move MOVE_NONE = new Move(NONE);
+  public static final Move MOVE_NONE = register(NONE);
 
   /**
    * The Null Move
    */
-  public static Move MOVE_NULL = new Move(NULL);
+  public static final Move MOVE_NULL = register(NULL);
 
   /**
    * The Resigning Move
    */
-  public static Move MOVE_RESIGN = new Move(RESIGN);
+  public static final Move MOVE_RESIGN = register(RESIGN);
 
   /**
    * The Winning Move
    */
-  public static Move MOVE_WIN = new Move(WIN);
+  public static final Move MOVE_WIN = register(WIN);
+
+  // creates all moves that can be made by the factory methods in advance
+  static {
+    for (Square from : Square.getSquares()) {
+      for (Square to : Square.getSquares()) {
+        if (from != to) {
+          register(encodeMove(from, to));
+          register(encodeMovePromote(from, to));
+        }
+      }
+    }
+    for (int pr = PieceType.PAWN.ordinal(); pr < PieceType.PIECE_RAW_NB; pr++) {
+      for (Square to : Square.getSquares()) {
+        register(encodeMoveDrop(PieceType.valueOf(pr), to));
+      }
+    }
+  }
+
+  private static Move register(final int move) {
+    MOVES[move] = new Move(move);
+    return MOVES[move];
+  }
 
   /**
    * Returns the move given its origin square and its destination square.
@@ -57,7 +85,7 @@ public class Move implements Comparable {
    * @return the move
    */
   public static Move makeMove(final Square fromSquare, final Square toSquare) {
-    return new Move(toSquare.ordinal() + (fromSquare.ordinal() << 7));
+    return valueOf(encodeMove(fromSquare, toSquare));
   }
 
   /**
@@ -68,7 +96,7 @@ public class Move implements Comparable {
    * @return the promoting move
    */
   public static Move makeMovePromote(final Square fromSquare, final Square toSquare) {
-    return new Move(toSquare.ordinal() + (fromSquare.ordinal() << 7) + PROMOTE);
+    return valueOf(encodeMovePromote(fromSquare, toSquare));
   }
 
   /**
@@ -80,8 +108,60 @@ public class Move implements Comparable {
    * @return the drop move
    */
   public static Move makeMoveDrop(final PieceType rawPiece, final Square toSquare) {
+    return valueOf(encodeMoveDrop(rawPiece, toSquare));
+  }
+
+  /**
+   * Returns the 16-bit representation of the move given its origin square and its destination
+   * square. It is the same value as {@code makeMove(fromSquare, toSquare).toInt()} without
+   * creating any object.
+   *
+   * @param fromSquare  the origin square
+   * @param toSquare    the destination square
+   * @return the 16-bit representation of the move
+   */
+  public static int encodeMove(final Square fromSquare, final Square toSquare) {
+    return toSquare.ordinal() + (fromSquare.ordinal() << 7);
+  }
+
+  /**
+   * Returns the 16-bit representation of the promoting move given its origin square and its
+   * destination square.
+   *
+   * @param fromSquare  the origin square
+   * @param toSquare    the destination square
+   * @return the 16-bit representation of the promoting move
+   */
+  public static int encodeMovePromote(final Square fromSquare, final Square toSquare) {
+    return toSquare.ordinal() + (fromSquare.ordinal() << 7) + PROMOTE;
+  }
+
+  /**
+   * Returns the 16-bit representation of the drop move given its raw piece
+   * (not colored and not promoted) and its destination square.
+   *
+   * @param rawPiece the raw piece of the drop move
+   * @param toSquare the destination square
+   * @return the 16-bit representation of the drop move
+   */
+  public static int encodeMoveDrop(final PieceType rawPiece, final Square toSquare) {
     assert rawPiece.ordinal() < PieceType.PIECE_RAW_NB;
-    return new Move(toSquare.ordinal() + (rawPiece.ordinal() << 7) + DROP);
+    return toSquare.ordinal() + (rawPiece.ordinal() << 7) + DROP;
+  }
+
+  /**
+   * Returns the move given its 16-bit representation.
+   * The canonical instance is returned without creating any object if the move is valid.
+   *
+   * @param move  the 16-bit representation of the move
+   * @return the move
+   * @see Move#toInt()
+   */
+  public static Move valueOf(final int move) {
+    if ((move & ~0xffff) == 0 && MOVES[move] != null) {
+      return MOVES[move];
+    }
+    return new Move(move);
   }
 
   /**
@@ -91,25 +171,52 @@ public class Move implements Comparable {
    * @return  the move ({@link Move#MOVE_NONE} if the usi is invalid)
    */
   public static Move makeMoveUSI(final String usi) {
-    if (usi.charAt(1) == '*') {
-      Piece piece = Piece.parseUSI(String.valueOf(usi.charAt(0)));
-      Square to = Square.parseUSI(usi.substring(2, 4));
-      if (piece == null || to == null) {
-        return MOVE_NONE;
-      }
-      return Move.makeMoveDrop(piece.getRawType(), to);
-    } else {
-      Square from = Square.parseUSI(usi.substring(0, 2));
-      Square to = Square.parseUSI(usi.substring(2, 4));
-      if (from == null || to == null) {
-        return MOVE_NONE;
-      }
-      if (usi.length() == 5 && usi.charAt(4) == '+') {
-        return Move.makeMovePromote(from, to);
-      } else {
-        return Move.makeMove(from, to);
+    return valueOf(encodeMoveUSI(usi, 0, usi.length()));
+  }
+
+  /**
+   * Returns the 16-bit representation of the move given its USI string in a part of a character
+   * sequence. The characters are decoded directly without creating any object, so a move list can
+   * be parsed in place, e.g. from a {@link java.nio.CharBuffer}.
+   *
+   * @param usi the character sequence containing the USI string of the move
+   * @param start the start index of the USI string, inclusive
+   * @param end the end index of the USI string, exclusive
+   * @return the 16-bit representation of the move (0, the one of {@link Move#MOVE_NONE} if the usi
+   *         is invalid)
+   */
+  public static int encodeMoveUSI(final CharSequence usi, final int start, final int end) {
+    int length = end - start;
+    if (length < 4 || length > 5) {
+      return NONE;
+    }
+    int to = parseSquare(usi.charAt(start + 2), usi.charAt(start + 3));
+    if (to < 0) {
+      return NONE;
+    }
+    if (usi.charAt(start + 1) == '*') {
+      Piece piece = Piece.parseUSI(usi.charAt(start), false);
+      if (length != 4 || piece == null || piece.getRawType().ordinal() >= PieceType.PIECE_RAW_NB) {
+        return NONE;
       }
+      return to + (piece.getRawType().ordinal() << 7) + DROP;
+    }
+    int from = parseSquare(usi.charAt(start), usi.charAt(start + 1));
+    if (from < 0 || from == to) {
+      return NONE;
+    }
+    if (length == 5) {
+      return usi.charAt(start + 4) == '+' ? to + (from << 7) + PROMOTE : NONE;
     }
+    return to + (from << 7);
+  }
+
+  // returns the ordinal of the square given the USI characters of its file and rank, or -1
+  private static int parseSquare(final char file, final char rank) {
+    if (file < '1' || file > '9' || rank < 'a' || rank > 'i') {
+      return -1;
+    }
+    return (file - '1') * Rank.RANKS_LENGTH + (rank - 'a');
   }
 
   /**
@@ -159,6 +266,16 @@ public class Move implements Comparable {
     return (move & PROMOTE) != 0;
   }
 
+  /**
+   * Returns the 16-bit representation of the move.
+   * It can be stored in a primitive move buffer and restored by {@link Move#valueOf(int)}.
+   *
+   * @return  the 16-bit representation of the move
+   */
+  public int toInt() {
+    return move;
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (o == this) {
@@ -173,6 +290,11 @@ public class Move implements Comparable {
     return m.move == this.move;
   }
 
+  @Override
+  public int hashCode() {
+    return move;
+  }
+
   @Override
   public int compareTo(final Object m) {
     return move - ((Move)m).move;
@@ -0,0 +1,300 @@
+package com.github.hayanige.shogilib;
+
+import static com.github.hayanige.shogilib.Piece.NO_PIECE;
+import static com.github.hayanige.shogilib.PieceType.BISHOP;
+import static com.github.hayanige.shogilib.PieceType.GOLD;
+import static com.github.hayanige.shogilib.PieceType.KING;
+import static com.github.hayanige.shogilib.PieceType.KNIGHT;
+import static com.github.hayanige.shogilib.PieceType.LANCE;
+import static com.github.hayanige.shogilib.PieceType.PAWN;
+import static com.github.hayanige.shogilib.PieceType.PIECE_RAW_NB;
+import static com.github.hayanige.shogilib.PieceType.ROOK;
+import static com.github.hayanige.shogilib.PieceType.SILVER;
+import static com.github.hayanige.shogilib.Square.SQUARES_LENGTH;
+
+import com.github.hayanige.shogilib.bitboard.PositionBitboardImpl;
+import java.util.Arrays;
+
+/**
+ * The packed SFEN: a 256-bit (32-byte) binary encoding of a position.
+ * <p>
+ * It is compatible with the PackedSfen of YaneuraOu. The bits are written from the least
+ * significant bit of the first byte in the following order.
+ * <ol>
+ *   <li>the side to move (1 bit)</li>
+ *   <li>the squares of the black king and the white king (7 bits each)</li>
+ *   <li>the other squares from 1a to 9i in Huffman codes</li>
+ *   <li>the pieces in the hands of black and white in Huffman codes</li>
+ * </ol>
+ * A piece on the board is written as its Huffman code, a promoted flag (except for gold) and the
+ * color bit, and an empty square is written as a single 0 bit. A piece in a hand drops the lowest
+ * bit of the code. The encoding fills exactly 256 bits if and only if the position has all the 40
+ * pieces, so positions with a piece box can't be encoded. The move counter isn't encoded.
+ */
+public final class PackedSfen {
+
+  /**
+   * The length of a packed SFEN in bytes.
+   */
+  public static final int BYTES = 32;
+
+  private static final int BITS = BYTES * 8;
+  private static final int SQUARE_BITS = 7;
+
+  // Huffman codes and their lengths indexed by the raw piece type (NONE for an empty square)
+  private static final int[] HUFFMAN_CODES = new int[] {
+      0x00, // NONE
+      0x01, // PAWN
+      0x03, // LANCE
+      0x0b, // KNIGHT
+      0x07, // SILVER
+      0x1f, // BISHOP
+      0x3f, // ROOK
+      0x0f  // GOLD
+  };
+  private static final int[] HUFFMAN_BITS = new int[] { 1, 2, 4, 4, 4, 6, 6, 5 };
+
+  private static final Color[] COLORS = new Color[] { Color.BLACK, Color.WHITE };
+
+  // the order the pieces in hands are written, the order of the piece types in YaneuraOu
+  private static final PieceType[] HAND_PIECE_TYPES = new PieceType[] {
+      PAWN, LANCE, KNIGHT, SILVER, BISHOP, ROOK, GOLD
+  };
+
+  private PackedSfen() {
+  }
+
+  /**
+   * Encodes the position into a new array.
+   *
+   * @param position  the position
+   * @return  the packed SFEN of {@link #BYTES} bytes
+   * @throws IllegalArgumentException if the position doesn't have all the 40 pieces
+   */
+  public static byte[] encode(final Position position) {
+    byte[] packed = new byte[BYTES];
+    encode(position, packed, 0);
+    return packed;
+  }
+
+  /**
+   * Encodes the position into the given array without creating any object.
+   *
+   * @param position  the position
+   * @param packed  the array the packed SFEN is written to
+   * @param offset  the offset in the array
+   * @throws IllegalArgumentException if the position doesn't have all the 40 pieces
+   */
+  public static void encode(final Position position, final byte[] packed, final int offset) {
+    checkPieceSet(position);
+    Arrays.fill(packed, offset, offset + BYTES, (byte) 0);
+
+    int cursor = writeBits(packed, offset, 0, position.getSideToMove().ordinal(), 1);
+    int blackKing = SQUARES_LENGTH;
+    int whiteKing = SQUARES_LENGTH;
+    for (int i = 0; i < SQUARES_LENGTH; i++) {
+      Piece piece = position.getPiece(Square.valueOf(i));
+      if (piece == Piece.B_KING) {
+        blackKing = i;
+      } else if (piece == Piece.W_KING) {
+        whiteKing = i;
+      }
+    }
+    cursor = writeBits(packed, offset, cursor, blackKing, SQUARE_BITS);
+    cursor = writeBits(packed, offset, cursor, whiteKing, SQUARE_BITS);
+
+    for (int i = 0; i < SQUARES_LENGTH; i++) {
+      if (i == blackKing || i == whiteKing) {
+        continue;
+      }
+      Piece piece = position.getPiece(Square.valueOf(i));
+      if (piece == NO_PIECE) {
+        cursor = writeBits(packed, offset, cursor, HUFFMAN_CODES[0], HUFFMAN_BITS[0]);
+        continue;
+      }
+      int rawType = piece.getRawType().ordinal();
+      cursor = writeBits(packed, offset, cursor, HUFFMAN_CODES[rawType], HUFFMAN_BITS[rawType]);
+      if (rawType != GOLD.ordinal()) {
+        cursor = writeBits(packed, offset, cursor, piece.getPieceType().isPromoted() ? 1 : 0, 1);
+      }
+      cursor = writeBits(packed, offset, cursor, piece.getColor().ordinal(), 1);
+    }
+
+    for (Color color : COLORS) {
+      for (PieceType pt : HAND_PIECE_TYPES) {
+        int rawType = pt.ordinal();
+        for (int n = position.getNumberOfPieceInHand(color, pt); n > 0; n--) {
+          cursor = writeBits(packed, offset, cursor,
+              HUFFMAN_CODES[rawType] >> 1, HUFFMAN_BITS[rawType] - 1);
+          if (pt != GOLD) {
+            cursor = writeBits(packed, offset, cursor, 0, 1);
+          }
+          cursor = writeBits(packed, offset, cursor, color.ordinal(), 1);
+        }
+      }
+    }
+    assert cursor == BITS;
+  }
+
+  /**
+   * Decodes a packed SFEN into a new position. The move counter of the position is 0.
+   *
+   * @param packed  the array the packed SFEN is read from
+   * @param offset  the offset in the array
+   * @return  a new position
+   * @throws IllegalArgumentException if the packed SFEN is invalid
+   */
+  public static Position decode(final byte[] packed, final int offset) {
+    if (offset < 0 || packed.length - offset < BYTES) {
+      throw new IllegalArgumentException("Invalid packed SFEN: The length is not enough.");
+    }
+    Piece[] board = new Piece[SQUARES_LENGTH];
+    Arrays.fill(board, NO_PIECE);
+    Hand[] hands = new Hand[] { new Hand(), new Hand() };
+    // the number of the pieces by the raw piece type, to check the hands don't overflow
+    int[] counts = new int[PIECE_RAW_NB];
+
+    int cursor = 0;
+    Color sideToMove = readBit(packed, offset, cursor++) == 0 ? Color.BLACK : Color.WHITE;
+    int blackKing = readBits(packed, offset, cursor, SQUARE_BITS);
+    cursor += SQUARE_BITS;
+    int whiteKing = readBits(packed, offset, cursor, SQUARE_BITS);
+    cursor += SQUARE_BITS;
+    if (blackKing >= SQUARES_LENGTH || whiteKing >= SQUARES_LENGTH || blackKing == whiteKing) {
+      throw new IllegalArgumentException("Invalid packed SFEN: The king square is invalid.");
+    }
+    board[blackKing] = Piece.B_KING;
+    board[whiteKing] = Piece.W_KING;
+
+    for (int i = 0; i < SQUARES_LENGTH; i++) {
+      if (i == blackKing || i == whiteKing) {
+        continue;
+      }
+      // read bits until they match a Huffman code
+      int code = 0;
+      int bits = 0;
+      int rawType = -1;
+      while (rawType < 0) {
+        if (cursor >= BITS || bits >= HUFFMAN_BITS[ROOK.ordinal()]) {
+          throw new IllegalArgumentException("Invalid packed SFEN: A piece is invalid.");
+        }
+        code |= readBit(packed, offset, cursor++) << bits++;
+        rawType = findPieceType(code, bits, 0);
+      }
+      if (rawType == 0) {
+        continue;
+      }
+      if (cursor + (rawType == GOLD.ordinal() ? 1 : 2) > BITS) {
+        throw new IllegalArgumentException("Invalid packed SFEN: A piece is invalid.");
+      }
+      PieceType pt = PieceType.valueOf(rawType);
+      boolean promoted = rawType != GOLD.ordinal() && readBit(packed, offset, cursor++) == 1;
+      Color color = readBit(packed, offset, cursor++) == 0 ? Color.BLACK : Color.WHITE;
+      Piece piece = pt.getColoredPiece(color);
+      board[i] = promoted ? piece.getPromoted() : piece;
+      counts[rawType]++;
+    }
+
+    while (cursor < BITS) {
+      int code = 0;
+      int bits = 0;
+      int rawType = -1;
+      while (rawType < 0) {
+        if (cursor >= BITS || bits >= HUFFMAN_BITS[ROOK.ordinal()] - 1) {
+          throw new IllegalArgumentException("Invalid packed SFEN: The hand is invalid.");
+        }
+        code |= readBit(packed, offset, cursor++) << bits++;
+        rawType = findPieceType(code, bits, 1);
+      }
+      if (rawType != GOLD.ordinal()) {
+        cursor++; // the promoted flag is always 0
+      }
+      PieceType pt = PieceType.valueOf(rawType);
+      if (cursor >= BITS || ++counts[rawType] > pt.getFullSetCount()) {
+        throw new IllegalArgumentException("Invalid packed SFEN: The hand is invalid.");
+      }
+      hands[readBit(packed, offset, cursor++)].add(pt);
+    }
+
+    return PositionBitboardImpl.createPosition(board, hands[Color.BLACK.ordinal()],
+        hands[Color.WHITE.ordinal()], sideToMove, 0);
+  }
+
+  // Returns the raw piece type whose code shifted by the shift matches the bits, or -1.
+  private static int findPieceType(final int code, final int bits, final int shift) {
+    for (int i = shift; i < PIECE_RAW_NB; i++) {
+      if (HUFFMAN_CODES[i] >> shift == code && HUFFMAN_BITS[i] - shift == bits) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Can the position be encoded? A position can be encoded if and only if it has all the 40
+   * pieces on the board or in the hands.
+   *
+   * @param position  the position
+   * @return  true if the position can be encoded
+   */
+  public static boolean isEncodable(final Position position) {
+    for (int rawType = PAWN.ordinal(); rawType <= KING.ordinal(); rawType++) {
+      PieceType pt = PieceType.valueOf(rawType);
+      if (countPieces(position, pt) != pt.getFullSetCount()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Checks that the position has exactly a full set of pieces.
+  private static void checkPieceSet(final Position position) {
+    for (int rawType = PAWN.ordinal(); rawType <= KING.ordinal(); rawType++) {
+      PieceType pt = PieceType.valueOf(rawType);
+      int count = countPieces(position, pt);
+      if (count != pt.getFullSetCount()) {
+        throw new IllegalArgumentException(
+            "The position doesn't have a full set of pieces: " + pt + " x " + count);
+      }
+    }
+  }
+
+  // counts the pieces of the raw type on the board and in the hands
+  private static int countPieces(final Position position, final PieceType pt) {
+    int count = 0;
+    if (pt != KING) {
+      count = position.getNumberOfPieceInHand(Color.BLACK, pt)
+          + position.getNumberOfPieceInHand(Color.WHITE, pt);
+    }
+    for (int i = 0; i < SQUARES_LENGTH; i++) {
+      if (position.getPiece(Square.valueOf(i)).getRawType() == pt) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // writes the lower bits of the value and returns the next cursor
+  private static int writeBits(final byte[] packed, final int offset, final int cursor,
+      final int value, final int bits) {
+    for (int i = 0; i < bits; i++) {
+      if ((value & (1 << i)) != 0) {
+        packed[offset + ((cursor + i) >>> 3)] |= (byte) (1 << ((cursor + i) & 7));
+      }
+    }
+    return cursor + bits;
+  }
+
+  private static int readBit(final byte[] packed, final int offset, final int cursor) {
+    return (packed[offset + (cursor >>> 3)] >>> (cursor & 7)) & 1;
+  }
+
+  private static int readBits(final byte[] packed, final int offset, final int cursor,
+      final int bits) {
+    int value = 0;
+    for (int i = 0; i < bits; i++) {
+      value |= readBit(packed, offset, cursor + i) << i;
+    }
+    return value;
+  }
+}
@@ -1,6 +1,9 @@
 package com.github.hayanige.shogilib;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class Perft {
 
@@ -23,7 +26,115 @@ public class Perft {
     return result;
   }
 
+  public static PerftResult hashPerftWithTime(final Position position, final int depth,
+      final int hashSizeMb) {
+    long start = System.currentTimeMillis();
+    PerftResult result = new PerftResult();
+    result.nodes = hashPerft(position, depth, new PerftTable(hashSizeMb), newMoveBuffers(depth));
+    long end = System.currentTimeMillis();
+    System.out.printf("Time[s]: %f\n", (end - start) / 1000.0);
+    return result;
+  }
+
+  /**
+   * Counts the nodes reusing the counts of the transposed subtrees cached in the table.
+   * Only the nodes are counted, because the details depend on the last moves.
+   */
+  static long hashPerft(final Position position, final int depth, final PerftTable table,
+      final int[][] buffers) {
+    if (depth == 0) {
+      return 1;
+    }
+    if (depth == 1) {
+      // bulk counting
+      return position.generateLegalMoves(buffers[depth]);
+    }
+
+    long key = position.getZobristHash();
+    long nodes = table.probe(key, depth);
+    if (nodes >= 0) {
+      return nodes;
+    }
+    nodes = 0;
+    int[] moves = buffers[depth];
+    int size = position.generateLegalMoves(moves);
+    for (int i = 0; i < size; i++) {
+      position.doMove(Move.valueOf(moves[i]));
+      nodes += hashPerft(position, depth - 1, table, buffers);
+      position.undoMove();
+    }
+    table.store(key, depth, nodes);
+    return nodes;
+  }
+
+  public static PerftResult parallelPerftWithTime(final Position position, final int depth,
+      final boolean detail) {
+    long start = System.currentTimeMillis();
+    PerftResult result = parallelPerft(position, depth, detail, ForkJoinPool.commonPool());
+    long end = System.currentTimeMillis();
+    System.out.printf("Time[s]: %f\n", (end - start) / 1000.0);
+    return result;
+  }
+
+  /**
+   * Counts the nodes in parallel on the given pool. The moves of the first plies are split into
+   * tasks, and each task plays its move on its own copy of the position, so the given position is
+   * not shared among the threads.
+   */
+  static PerftResult parallelPerft(final Position position, final int depth,
+      final boolean detail, final ForkJoinPool pool) {
+    return pool.invoke(new PerftTask(position.copy(), depth, detail, 0));
+  }
+
+  // A perft task of the subtree from the position owned by the task. It is never serialized.
+  @SuppressWarnings("serial")
+  private static class PerftTask extends RecursiveTask<PerftResult> {
+    private static final int SPLIT_PLIES = 2;     // splits the moves of the first two plies
+    private static final int MIN_SPLIT_DEPTH = 4; // doesn't split the shallow subtrees
+
+    private final Position position;
+    private final int depth;
+    private final boolean detail;
+    private final int ply;
+
+    PerftTask(final Position position, final int depth, final boolean detail, final int ply) {
+      this.position = position;
+      this.depth = depth;
+      this.detail = detail;
+      this.ply = ply;
+    }
+
+    @Override
+    protected PerftResult compute() {
+      if (ply >= SPLIT_PLIES || depth < MIN_SPLIT_DEPTH) {
+        return perft(position, depth, detail);
+      }
+
+      List<PerftTask> tasks = new ArrayList<>();
+      for (Move move : position.getLegalMoves()) {
+        Position child = position.copy();
+        child.doMove(move);
+        tasks.add(new PerftTask(child, depth - 1, detail, ply + 1));
+      }
+      PerftResult result = new PerftResult();
+      for (PerftTask task : invokeAll(tasks)) {
+        result.add(task.join());
+      }
+      return result;
+    }
+  }
+
   static PerftResult perft(final Position position, final int depth, final boolean detail) {
+    return perft(position, depth, detail, newMoveBuffers(depth));
+  }
+
+  // move buffers for each remaining depth, not to create them at every node
+  private static int[][] newMoveBuffers(final int depth) {
+    return new int[depth + 1][Position.MAX_MOVES];
+  }
+
+  private static PerftResult perft(final Position position, final int depth, final boolean detail,
+      final int[][] buffers) {
     PerftResult result = new PerftResult();
     if (depth == 0) {
       result.nodes++;
@@ -41,17 +152,66 @@ public class Perft {
           }
         }
       }
+    } else if (depth == 1 && !detail) {
+      // bulk counting: the leaf nodes are counted without playing the moves
+      result.nodes = position.generateLegalMoves(buffers[depth]);
     } else {
-      List<Move> moves = position.getLegalMoves();
-      for (Move move: moves) {
-        position.doMove(move);
-        result.add(perft(position, depth - 1, detail));
+      int[] moves = buffers[depth];
+      int size = position.generateLegalMoves(moves);
+      for (int i = 0; i < size; i++) {
+        position.doMove(Move.valueOf(moves[i]));
+        result.add(perft(position, depth - 1, detail, buffers));
         position.undoMove();
       }
     }
     return result;
   }
 
+  /**
+   * A fixed-size table caching the node counts of subtrees keyed by the zobrist hash and the depth.
+   * Each entry is a pair of longs: the key xor the data, and the data packing the nodes and the
+   * depth. An entry torn by concurrent writes fails the verification of the key, so the table can
+   * be shared among threads without locks. A new entry always replaces the old one.
+   */
+  static class PerftTable {
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    private static final int MAX_ENTRIES = 1 << 29;
+
+    private final long[] entries;
+    private final int mask;
+
+    PerftTable(final int sizeMb) {
+      // an entry uses 16 bytes
+      long requested = Math.max(1L, (long) sizeMb * 1024 * 1024 / 16);
+      int size = (int) Long.highestOneBit(Math.min(requested, MAX_ENTRIES));
+      entries = new long[size * 2];
+      mask = size - 1;
+    }
+
+    // Returns the cached nodes, or -1 if the nodes for the key and the depth are not cached.
+    long probe(final long key, final int depth) {
+      int index = index(key);
+      long data = entries[index + 1];
+      long check = entries[index];
+      if ((check ^ data) != key || (data & DEPTH_MASK) != depth) {
+        return -1;
+      }
+      return data >>> DEPTH_BITS;
+    }
+
+    void store(final long key, final int depth, final long nodes) {
+      int index = index(key);
+      long data = (nodes << DEPTH_BITS) | depth;
+      entries[index] = key ^ data;
+      entries[index + 1] = data;
+    }
+
+    private int index(final long key) {
+      return ((int) (key ^ (key >>> 32)) & mask) << 1;
+    }
+  }
+
   static class PerftResult {
     private long nodes;
     private long captures;
@@ -149,6 +149,16 @@ public enum Piece {
     return List.of(PIECES);
   }
 
+  /**
+   * Returns the piece given its ordinal.
+   *
+   * @param ordinal ordinal of the piece
+   * @return  the piece
+   */
+  public static Piece valueOf(final int ordinal) {
+    return PIECES[ordinal];
+  }
+
   /**
    * Returns the piece given its color and its piece type.
    *
@@ -171,6 +181,25 @@ public enum Piece {
     }
   }
 
+  // tables from the USI character to the piece, indexed by the character
+  private static final Piece[] usiCharToPiece = new Piece[128];
+  private static final Piece[] usiCharToPromotedPiece = new Piece[128];
+  static {
+    for (Piece piece: PIECES) {
+      if (piece == NO_PIECE) {
+        continue;
+      }
+      if (piece.usiString.length() == 1) {
+        usiCharToPiece[piece.usiString.charAt(0)] = piece;
+      } else {
+        usiCharToPromotedPiece[piece.usiString.charAt(1)] = piece;
+      }
+    }
+    // the standard notation of the promoted knights
+    usiCharToPromotedPiece['N'] = B_PRO_KNIGHT;
+    usiCharToPromotedPiece['n'] = W_PRO_KNIGHT;
+  }
+
   /**
    * Returns the piece given its USI string.
    *
@@ -181,6 +210,21 @@ public enum Piece {
     return usi2Piece.get(usi);
   }
 
+  /**
+   * Returns the piece given the character of its USI string without creating any object.
+   * If the piece is promoted, the character is the one following '+'.
+   *
+   * @param usi the character of the USI string
+   * @param promoted  true if the piece is promoted
+   * @return  the piece (null if the character is invalid)
+   */
+  public static Piece parseUSI(final char usi, final boolean promoted) {
+    if (usi >= 128) {
+      return null;
+    }
+    return promoted ? usiCharToPromotedPiece[usi] : usiCharToPiece[usi];
+  }
+
   /**
    * Returns the USI string of the piece.
    *
@@ -24,6 +24,9 @@ public enum PieceType {
   private static final PieceType[] PIECE_TYPES = PieceType.values();
   public static final int PIECE_RAW_NB = KING.ordinal(); // the last ordinal of non-promoted piece
 
+  // the number of each raw piece type in a full set of pieces
+  private static final int[] FULL_SET_COUNTS = new int[] { 0, 18, 4, 4, 4, 2, 2, 4, 2 };
+
   private final String usiString;
   private final String prettyString;
 
@@ -55,6 +58,16 @@ public enum PieceType {
     }
   }
 
+  /**
+   * Returns the number of the pieces of this type in a full set of the 40 pieces, counting the
+   * promoted pieces as their raw type.
+   *
+   * @return  the number of the pieces, or 0 if this type is promoted or {@link #NONE}
+   */
+  public int getFullSetCount() {
+    return ordinal() <= PIECE_RAW_NB ? FULL_SET_COUNTS[ordinal()] : 0;
+  }
+
   /**
    * Returns the piece type given its ordinal.
    *
@@ -1,6 +1,8 @@
 package com.github.hayanige.shogilib;
 
 import com.github.hayanige.shogilib.bitboard.PositionBitboardImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -18,6 +20,51 @@ public interface Position {
    */
   String HIRATE_SFEN = "lnsgkgsnl/1r5b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL b - 1";
 
+  /**
+   * The length of a move buffer enough to hold moves generated from any position.
+   * Legal moves never exceed 593, but pseudo-legal moves may exceed it.
+   */
+  int MAX_MOVES = 1024;
+
+  /**
+   * The length of a buffer enough to hold the SFEN of any position in ASCII bytes.
+   */
+  int MAX_SFEN_LENGTH = 256;
+
+  /**
+   * Reloads this position from SFEN in place. The board, the hands and the history of the played
+   * moves are replaced without allocating a new position, so a position can be reused for many
+   * SFENs. The attack map stays enabled if it is enabled.
+   *
+   * @param sfen  SFEN
+   * @throws IllegalArgumentException if the SFEN is invalid. The position is cleared in this case.
+   */
+  void setSfen(CharSequence sfen);
+
+  /**
+   * Reloads this position to Hirate(starting position) in place.
+   *
+   * @see #setSfen(CharSequence)
+   */
+  default void reset() {
+    setSfen(HIRATE_SFEN);
+  }
+
+  /**
+   * Returns a deep copy of this position. The copy has its own board, hands and history of the
+   * played moves, so it can be played and undone independently, e.g. on another thread.
+   *
+   * @return  a copy of this position
+   */
+  Position copy();
+
+  /**
+   * Returns an immutable snapshot of this position without the history of the played moves.
+   *
+   * @return  a snapshot of this position
+   */
+  PositionSnapshot snapshot();
+
   /**
    * Returns the next side to move.
    *
@@ -90,6 +137,14 @@ public interface Position {
    */
   int getNumberOfPieceInHand(Color color, PieceType pr);
 
+  /**
+   * Returns the 32-bit representation of a hand. See {@link Hand#toInt()}.
+   *
+   * @param color the color of the hand
+   * @return  the 32-bit representation of the hand
+   */
+  int getHandValue(Color color);
+
   /**
    * Does a given piece exist in a hand?
    *
@@ -129,6 +184,40 @@ public interface Position {
    */
   List<Move> getPseudoLegalMoves();
 
+  /**
+   * Generates all legal moves for the current position into the given buffer. Each move is stored
+   * as its 16-bit representation (see {@link Move#toInt()}), in the same order as
+   * {@link Position#getLegalMoves()}.
+   * <p>
+   * The buffer can be reused, e.g. one buffer per ply in a search. The bitboards are computed in
+   * the scratch bitboards of the position, but a move that may repeat the position is played to
+   * check the repetition, which can create the state of a ply not reached before.
+   *
+   * @param moves the buffer whose length is at least {@link Position#MAX_MOVES}
+   * @return  the number of the generated moves
+   */
+  int generateLegalMoves(int[] moves);
+
+  /**
+   * Generates all legal moves checking the enemy king into the given buffer, including the moves
+   * discovering a check. Each move is stored as its 16-bit representation, in the same order as
+   * {@link Position#generateLegalMoves(int[])}. Like it, a move that may repeat the position is
+   * played to check the repetition.
+   *
+   * @param moves the buffer whose length is at least {@link Position#MAX_MOVES}
+   * @return  the number of the generated moves
+   */
+  int generateCheckMoves(int[] moves);
+
+  /**
+   * Generates all pseudo-legal moves for the current position into the given buffer without
+   * creating any object. Each move is stored as its 16-bit representation.
+   *
+   * @param moves the buffer whose length is at least {@link Position#MAX_MOVES}
+   * @return  the number of the generated moves
+   */
+  int generatePseudoLegalMoves(int[] moves);
+
   /**
    * Is the king of the current side checked?
    *
@@ -136,6 +225,43 @@ public interface Position {
    */
   boolean isKingAttacked();
 
+  /**
+   * Is the square attacked by any piece of the attacker?
+   *
+   * @param attacker  the color of the attacking pieces
+   * @param square  the square
+   * @return  true if the square is attacked
+   */
+  boolean isAttacked(Color attacker, Square square);
+
+  /**
+   * Returns the number of the attacker's pieces effective for the square.
+   *
+   * @param attacker  the color of the attacking pieces
+   * @param square  the square
+   * @return  the number of the attacking pieces
+   */
+  int getAttackCount(Color attacker, Square square);
+
+  /**
+   * Enables or disables the attack map.
+   * <p>
+   * While the attack map is enabled, the position maintains the number of pieces attacking each
+   * square incrementally, so {@link #isAttacked(Color, Square)},
+   * {@link #getAttackCount(Color, Square)} and the check detection become simple lookups at the
+   * cost of slower piece updates. It is disabled by default.
+   *
+   * @param enabled true to enable the attack map
+   */
+  void setAttackMapEnabled(boolean enabled);
+
+  /**
+   * Is the attack map enabled?
+   *
+   * @return  true if the attack map is enabled
+   */
+  boolean isAttackMapEnabled();
+
   /**
    * Is the position a fourfold repetition?
    *
@@ -180,6 +306,33 @@ public interface Position {
    */
   String getSfen();
 
+  /**
+   * Writes SFEN of the current position into the buffer as ASCII bytes without creating any
+   * object.
+   *
+   * @param buffer  the buffer having at least {@link #MAX_SFEN_LENGTH} bytes from the offset
+   * @param offset  the offset in the buffer
+   * @return  the number of the written bytes
+   * @throws IndexOutOfBoundsException if the buffer is not large enough
+   */
+  int writeSfen(byte[] buffer, int offset);
+
+  /**
+   * Writes SFEN of the current position into the byte buffer as ASCII bytes.
+   *
+   * @param buffer  the byte buffer
+   * @throws java.nio.BufferOverflowException if the remaining of the buffer is not large enough
+   */
+  void writeSfen(ByteBuffer buffer);
+
+  /**
+   * Appends SFEN of the current position to the appendable.
+   *
+   * @param out the appendable
+   * @throws IOException if the appendable throws it
+   */
+  void writeSfen(Appendable out) throws IOException;
+
   /**
    * Returns a Zobrist hash code value for this position. A Zobrist hashing assures the same
    * position returns the same hash value. It is calculated using the position of the pieces,
@@ -194,6 +347,15 @@ public interface Position {
    */
   long getZobristHash();
 
+  /**
+   * Returns a Zobrist hash code value of the board and the side to move, i.e.
+   * {@link #getZobristHash()} without the hands. It is the same for the positions which differ
+   * only in the hands, so that they can be compared by the hands, e.g. in a mate search.
+   *
+   * @return a Zobrist hash value for the board and the side to move
+   */
+  long getBoardHash();
+
   /**
    * Returns a human-readable output of the current position with Japanese.
    *
@@ -208,13 +370,27 @@ public interface Position {
    * Although the class of the instance may change in the future, users don't need to be aware of
    * the implementation.
    *
+   * The SFEN is scanned in a single pass without creating intermediate strings, so any character
+   * sequence can be given, e.g. a {@link java.nio.CharBuffer} decoded from ASCII bytes.
+   *
    * @param sfen  SFEN
    * @return  a new position from SFEN
+   * @throws IllegalArgumentException if the SFEN is invalid
    */
-  static Position createPositionFromSfen(final String sfen) {
+  static Position createPositionFromSfen(final CharSequence sfen) {
     return PositionBitboardImpl.createPositionFromSfen(sfen);
   }
 
+  /**
+   * A static factory method returning a new position instance from a snapshot.
+   *
+   * @param snapshot  the snapshot of a position
+   * @return  a new position from the snapshot
+   */
+  static Position createPositionFromSnapshot(final PositionSnapshot snapshot) {
+    return PositionBitboardImpl.createPositionFromSnapshot(snapshot);
+  }
+
   /**
    * A static factory method returning a new Hirate position instance.
    *
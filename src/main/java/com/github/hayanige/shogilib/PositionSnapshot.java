@@ -0,0 +1,135 @@
+package com.github.hayanige.shogilib;
+
+import static com.github.hayanige.shogilib.Square.SQUARES_LENGTH;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a position. It holds only the board, the hands, the side to move and
+ * the move counter in a compact form, without the history of the played moves, so it can be
+ * shared freely among threads. A position is restored by {@link #toPosition()}.
+ */
+public final class PositionSnapshot {
+
+  private final byte[] board;   // the ordinals of the pieces on each square
+  private final int blackHand;
+  private final int whiteHand;
+  private final Color sideToMove;
+  private final int moveCounter;
+  private final long zobristHash;
+
+  /**
+   * Creates a snapshot. The given board and hands are copied.
+   *
+   * @param board the pieces on each square
+   * @param blackHand the hand of black
+   * @param whiteHand the hand of white
+   * @param sideToMove  the next side to move
+   * @param moveCounter the counter of full moves played
+   * @param zobristHash the zobrist hash of the position
+   */
+  public PositionSnapshot(final Piece[] board, final Hand blackHand, final Hand whiteHand,
+      final Color sideToMove, final int moveCounter, final long zobristHash) {
+    this.board = new byte[SQUARES_LENGTH];
+    for (int i = 0; i < SQUARES_LENGTH; i++) {
+      this.board[i] = (byte) board[i].ordinal();
+    }
+    this.blackHand = blackHand.toInt();
+    this.whiteHand = whiteHand.toInt();
+    this.sideToMove = sideToMove;
+    this.moveCounter = moveCounter;
+    this.zobristHash = zobristHash;
+  }
+
+  /**
+   * Returns the piece on the given square.
+   *
+   * @param square  the square
+   * @return  the piece, or {@link Piece#NO_PIECE} if the square is empty
+   */
+  public Piece getPiece(final Square square) {
+    return Piece.valueOf(board[square.ordinal()]);
+  }
+
+  /**
+   * Returns a copy of the hand of the given color.
+   *
+   * @param color the color
+   * @return  a new hand
+   */
+  public Hand getHand(final Color color) {
+    return Hand.valueOf(color == Color.BLACK ? blackHand : whiteHand);
+  }
+
+  /**
+   * Returns the next side to move.
+   *
+   * @return  the side to move
+   */
+  public Color getSideToMove() {
+    return sideToMove;
+  }
+
+  /**
+   * Returns the counter of full moves played.
+   *
+   * @return  the move counter
+   */
+  public int getMoveCounter() {
+    return moveCounter;
+  }
+
+  /**
+   * Returns the zobrist hash of the position.
+   *
+   * @return  the zobrist hash
+   */
+  public long getZobristHash() {
+    return zobristHash;
+  }
+
+  /**
+   * Restores a new position from this snapshot.
+   *
+   * @return  a new position
+   */
+  public Position toPosition() {
+    return Position.createPositionFromSnapshot(this);
+  }
+
+  /**
+   * Returns the SFEN of the position. It restores a new position each time.
+   *
+   * @return  the SFEN
+   */
+  public String getSfen() {
+    return toPosition().getSfen();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PositionSnapshot that = (PositionSnapshot) o;
+    return zobristHash == that.zobristHash
+        && blackHand == that.blackHand
+        && whiteHand == that.whiteHand
+        && sideToMove == that.sideToMove
+        && moveCounter == that.moveCounter
+        && Arrays.equals(board, that.board);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(zobristHash);
+  }
+
+  @Override
+  public String toString() {
+    return getSfen();
+  }
+}
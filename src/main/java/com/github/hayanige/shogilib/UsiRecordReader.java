@@ -0,0 +1,319 @@
+package com.github.hayanige.shogilib;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A streaming reader of game records written as the USI {@code position} command, e.g.
+ * {@code position startpos moves 7g7f 3c3d 8h2b+}. The leading {@code position} token may be
+ * omitted, and the initial position may be given as {@code sfen <SFEN>}.
+ * <p>
+ * The reader replays the moves on one position which is reused for all the records, so it can
+ * process a large archive without creating a position per game. The move list is tokenized in
+ * place from a {@link CharSequence} or a {@link ByteBuffer} of ASCII bytes without creating any
+ * string, and every move is validated against the legal moves of the position.
+ * <p>
+ * A reader is not thread-safe. Use one reader per thread.
+ */
+public final class UsiRecordReader {
+
+  /**
+   * A handler of the positions of a game record.
+   */
+  @FunctionalInterface
+  public interface Handler {
+
+    /**
+     * Handles a position of the game record. It is called for the initial position and for the
+     * position after each move.
+     * <p>
+     * The position is owned by the reader and is changed after this method returns. It must not
+     * be modified, and it has to be copied by {@link Position#copy()},
+     * {@link Position#snapshot()} or {@link PackedSfen} to keep it.
+     *
+     * @param position  the position
+     * @param move  the move played in the position ({@link Move#MOVE_NONE} for the last position)
+     */
+    void handle(Position position, Move move);
+  }
+
+  private final Position position;
+  private final int[] moves = new int[Position.MAX_MOVES];
+  private final byte[] packed = new byte[PackedSfen.BYTES];
+
+  // reusable views of the input to avoid creating substrings
+  private final Slice sfen = new Slice();
+  private final AsciiSequence ascii = new AsciiSequence();
+
+  /**
+   * Creates a reader with a new position.
+   */
+  public UsiRecordReader() {
+    this(Position.createHiratePosition());
+  }
+
+  /**
+   * Creates a reader replaying the records on the given position.
+   *
+   * @param position  the position to be reused
+   */
+  public UsiRecordReader(final Position position) {
+    this.position = position;
+  }
+
+  /**
+   * Returns the position the records are replayed on.
+   *
+   * @return  the position
+   */
+  public Position getPosition() {
+    return position;
+  }
+
+  /**
+   * Replays a game record.
+   *
+   * @param line  the game record
+   * @return  the position after the last move. It is the position of this reader.
+   * @throws IllegalArgumentException if the record is invalid or has an illegal move
+   */
+  public Position read(final CharSequence line) {
+    return read(line, null);
+  }
+
+  /**
+   * Replays a game record and passes each position to the handler.
+   *
+   * @param line  the game record
+   * @param handler the handler of the positions, or null
+   * @return  the position after the last move. It is the position of this reader.
+   * @throws IllegalArgumentException if the record is invalid or has an illegal move. The
+   *         positions before the error have been passed to the handler.
+   */
+  public Position read(final CharSequence line, final Handler handler) {
+    int end = line.length();
+    int start = skipSpaces(line, 0, end);
+    int tokenEnd = findTokenEnd(line, start, end);
+    if (matches(line, start, tokenEnd, "position")) {
+      start = skipSpaces(line, tokenEnd, end);
+      tokenEnd = findTokenEnd(line, start, end);
+    }
+
+    // Set the initial position
+    if (matches(line, start, tokenEnd, "startpos")) {
+      position.reset();
+    } else if (matches(line, start, tokenEnd, "sfen")) {
+      int sfenStart = skipSpaces(line, tokenEnd, end);
+      int sfenEnd = sfenStart;
+      tokenEnd = sfenStart;
+      while (tokenEnd < end) {
+        int tokenStart = skipSpaces(line, tokenEnd, end);
+        if (tokenStart == end) {
+          break;
+        }
+        int next = findTokenEnd(line, tokenStart, end);
+        if (matches(line, tokenStart, next, "moves")) {
+          break;
+        }
+        sfenEnd = next;
+        tokenEnd = next;
+      }
+      position.setSfen(sfen.set(line, sfenStart, sfenEnd));
+    } else {
+      throw new IllegalArgumentException("Invalid USI: The initial position is not found.");
+    }
+
+    // Play the moves
+    start = skipSpaces(line, tokenEnd, end);
+    if (start < end) {
+      tokenEnd = findTokenEnd(line, start, end);
+      if (!matches(line, start, tokenEnd, "moves")) {
+        throw new IllegalArgumentException("Invalid USI: Unknown token "
+            + line.subSequence(start, tokenEnd) + ".");
+      }
+      for (start = skipSpaces(line, tokenEnd, end); start < end;
+          start = skipSpaces(line, tokenEnd, end)) {
+        tokenEnd = findTokenEnd(line, start, end);
+        Move move = Move.valueOf(Move.encodeMoveUSI(line, start, tokenEnd));
+        if (!isLegal(move)) {
+          throw new IllegalArgumentException("Invalid USI: The move "
+              + line.subSequence(start, tokenEnd) + " is illegal in " + position.getSfen() + ".");
+        }
+        if (handler != null) {
+          handler.handle(position, move);
+        }
+        position.doMove(move);
+      }
+    }
+    if (handler != null) {
+      handler.handle(position, Move.MOVE_NONE);
+    }
+    return position;
+  }
+
+  /**
+   * Replays the next game record in the byte buffer and passes each position to the handler.
+   * A record is a line of ASCII bytes from the current position of the buffer, and the position of
+   * the buffer is advanced to the next line. Blank lines are skipped.
+   *
+   * @param buffer  the byte buffer containing the records
+   * @param handler the handler of the positions, or null
+   * @return  the position after the last move, or null if the buffer has no more record
+   * @throws IllegalArgumentException if the record is invalid or has an illegal move. The position
+   *         of the buffer has been advanced to the next line, so the next record can be read.
+   */
+  public Position read(final ByteBuffer buffer, final Handler handler) {
+    while (buffer.hasRemaining()) {
+      int start = buffer.position();
+      int limit = buffer.limit();
+      int end = start;
+      while (end < limit && buffer.get(end) != '\n') {
+        end++;
+      }
+      buffer.position(end < limit ? end + 1 : end);
+
+      ascii.set(buffer, start, end);
+      if (skipSpaces(ascii, 0, ascii.length()) < ascii.length()) {
+        return read(ascii, handler);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Replays a game record and writes the packed SFENs of the initial position and the positions
+   * after each move into the byte buffer.
+   *
+   * @param line  the game record
+   * @param out the byte buffer the packed SFENs are written to
+   * @return  the number of the written packed SFENs
+   * @throws IllegalArgumentException if the record is invalid or has an illegal move, or a
+   *         position doesn't have all the 40 pieces
+   * @throws java.nio.BufferOverflowException if the remaining of the buffer is not large enough
+   * @see PackedSfen
+   */
+  public int readPacked(final CharSequence line, final ByteBuffer out) {
+    int start = out.position();
+    read(line, (position, move) -> {
+      PackedSfen.encode(position, packed, 0);
+      out.put(packed);
+    });
+    return (out.position() - start) / PackedSfen.BYTES;
+  }
+
+  private boolean isLegal(final Move move) {
+    if (move == Move.MOVE_NONE) {
+      return false;
+    }
+    int size = position.generateLegalMoves(moves);
+    for (int i = 0; i < size; i++) {
+      if (moves[i] == move.toInt()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSpace(final char c) {
+    return c <= ' ';
+  }
+
+  private static int skipSpaces(final CharSequence line, int index, final int end) {
+    while (index < end && isSpace(line.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  private static int findTokenEnd(final CharSequence line, int index, final int end) {
+    while (index < end && !isSpace(line.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  private static boolean matches(final CharSequence line, final int start, final int end,
+      final String token) {
+    if (end - start != token.length()) {
+      return false;
+    }
+    for (int i = 0; i < token.length(); i++) {
+      if (line.charAt(start + i) != token.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // A part of a character sequence
+  private static final class Slice implements CharSequence {
+
+    private CharSequence source;
+    private int start;
+    private int end;
+
+    Slice set(final CharSequence source, final int start, final int end) {
+      this.source = source;
+      this.start = start;
+      this.end = end;
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      return source.subSequence(this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+      return source.subSequence(start, end).toString();
+    }
+  }
+
+  // A part of a byte buffer read as ASCII characters
+  private static final class AsciiSequence implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+
+    void set(final ByteBuffer buffer, final int start, final int end) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      return (char) (buffer.get(start + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder(length());
+      for (int i = 0; i < length(); i++) {
+        sb.append(charAt(i));
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -108,6 +108,46 @@ public class Bitboard {
     return this;
   }
 
+  /**
+   * OR operation of this Bitboard and the AND of the two given Bitboards.
+   * This bitboard is overwritten by the result of the operation without creating any bitboard.
+   * Returns this bitboard.
+   *
+   * @param b1  a bitboard
+   * @param b2  a bitboard
+   * @return  the result bitboard (this bitboard)
+   */
+  public Bitboard orAnd(final Bitboard b1, final Bitboard b2) {
+    p0 |= b1.p0 & b2.p0;
+    p1 |= b1.p1 & b2.p1;
+    return this;
+  }
+
+  /**
+   * Copies the given Bitboard to this Bitboard.
+   * Returns this bitboard.
+   *
+   * @param b the given bitboard
+   * @return  the result bitboard (this bitboard)
+   */
+  public Bitboard set(final Bitboard b) {
+    p0 = b.p0;
+    p1 = b.p1;
+    return this;
+  }
+
+  /**
+   * Sets all bits of this bitboard to 0.
+   * Returns this bitboard.
+   *
+   * @return  the result bitboard (this bitboard)
+   */
+  public Bitboard clear() {
+    p0 = 0;
+    p1 = 0;
+    return this;
+  }
+
   /**
    * Right shift operation of this bitboard.
    *
@@ -157,6 +197,29 @@ public class Bitboard {
     return Square.valueOf(number);
   }
 
+  /**
+   * Is the bit corresponding to the given square 1?
+   *
+   * @param square  the square
+   * @return  true if the bit is 1
+   */
+  public boolean contains(final Square square) {
+    if (square.ordinal() < LOWER_LENGTH) {
+      return (p0 & (1L << square.ordinal())) != 0;
+    } else {
+      return (p1 & (1L << (square.ordinal() - LOWER_LENGTH))) != 0;
+    }
+  }
+
+  /**
+   * Returns the number of 1 bits in this bitboard.
+   *
+   * @return  the number of 1 bits
+   */
+  public int popCount() {
+    return Long.bitCount(p0) + Long.bitCount(p1);
+  }
+
   /**
    * Returns a new copy instance of this bitboard.
    *
@@ -176,6 +239,28 @@ public class Bitboard {
     return p0 ^ p1;
   }
 
+  /**
+   * Returns the result of XOR of the upper bits and the lower bits of the AND of this bitboard and
+   * the given mask without creating any bitboard.
+   * This method is used when calculating Magic Bitboard.
+   *
+   * @param mask  the mask bitboard
+   * @return  the result of xor of the upper bits and the lower bits of the masked bitboard
+   */
+  public long merge(final Bitboard mask) {
+    return (p0 & mask.p0) ^ (p1 & mask.p1);
+  }
+
+  /**
+   * Does this bitboard have a common 1 bit with the given bitboard?
+   *
+   * @param b the given bitboard
+   * @return  true if the AND of the two bitboards is not zero
+   */
+  public boolean intersects(final Bitboard b) {
+    return (p0 & b.p0) != 0 || (p1 & b.p1) != 0;
+  }
+
   /**
    * Is the bitboard zero?
    *
@@ -227,6 +312,25 @@ public class Bitboard {
   public static Bitboard not(final Bitboard bitboard) {
     return new Bitboard(~bitboard.p0, ~bitboard.p1);
   }
+
+  /**
+   * Returns the lower bits of this bitboard, the squares from 1一 to 7九.
+   *
+   * @return  the lower bits
+   */
+  long lower() {
+    return p0;
+  }
+
+  /**
+   * Returns the upper bits of this bitboard, the squares from 8一 to 9九.
+   *
+   * @return  the upper bits
+   */
+  long upper() {
+    return p1;
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (o == this) {
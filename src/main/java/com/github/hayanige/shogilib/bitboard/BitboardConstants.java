@@ -1,11 +1,13 @@
 package com.github.hayanige.shogilib.bitboard;
 
 import static com.github.hayanige.shogilib.Color.COLORS_LENGTH;
+import static com.github.hayanige.shogilib.File.FILES_LENGTH;
 import static com.github.hayanige.shogilib.Piece.B_BISHOP;
 import static com.github.hayanige.shogilib.Piece.B_KING;
 import static com.github.hayanige.shogilib.Piece.B_ROOK;
 import static com.github.hayanige.shogilib.PieceType.GOLD;
 import static com.github.hayanige.shogilib.PieceType.KNIGHT;
+import static com.github.hayanige.shogilib.PieceType.LANCE;
 import static com.github.hayanige.shogilib.PieceType.PAWN;
 import static com.github.hayanige.shogilib.PieceType.SILVER;
 import static com.github.hayanige.shogilib.Rank.RANKS_LENGTH;
@@ -68,6 +70,11 @@ public class BitboardConstants {
   private static final Bitboard[] BishopStepEffectBB = new Bitboard[SQUARES_LENGTH];
   private static final Bitboard[] RookStepEffectBB = new Bitboard[SQUARES_LENGTH];
 
+  // squares between two squares on the same line (excluding both ends)
+  private static final Bitboard[][] BetweenBB = new Bitboard[SQUARES_LENGTH][SQUARES_LENGTH];
+  // squares of the whole line passing through two squares
+  private static final Bitboard[][] LineBB = new Bitboard[SQUARES_LENGTH][SQUARES_LENGTH];
+
   /*
    * Implementation of Magic Bitboard in Shogi
    * See: https://ipsj.ixsq.nii.ac.jp/ej/?action=repository_action_common_download&item_id=71312&item_no=1&attribute_id=1&file_no=1
@@ -91,6 +98,8 @@ public class BitboardConstants {
   private static final int[] BishopAttackIndex = new int[SQUARES_LENGTH];
   private static final int[] RookAttackIndex = new int[SQUARES_LENGTH];
   private static final Bitboard[] BishopMaskBB = new Bitboard[SQUARES_LENGTH];
+  // Lance effects indexed by the occupancy of the second to the eighth rank in the file
+  private static final Bitboard[][][] LanceAttack = new Bitboard[COLORS_LENGTH][SQUARES_LENGTH][1 << 7];
   private static final Bitboard[] RookMaskBB = new Bitboard[SQUARES_LENGTH];
 
   // The number of effective square candidates for Bishop in each square.
@@ -403,6 +412,23 @@ public class BitboardConstants {
 
   // generates Lance effects bitboards
   static {
+    for (Color color : Color.getColors()) {
+      Piece lance = LANCE.getColoredPiece(color);
+      for (Square square : Square.getSquares()) {
+        for (int index = 0; index < 1 << 7; index++) {
+          // the occupied bitboard of the index pattern in the file
+          Bitboard occ = new Bitboard();
+          for (int rank = 1; rank <= 7; rank++) {
+            if ((index & (1 << (rank - 1))) != 0) {
+              occ.or(SquareBB[square.getFile().ordinal() * RANKS_LENGTH + rank]);
+            }
+          }
+          LanceAttack[color.ordinal()][square.ordinal()][index]
+              = computeSlidingAttacks(lance, square, occ);
+        }
+      }
+    }
+
     ForwardRanksBB[Color.BLACK.ordinal()] = new Bitboard[] {
         ZERO_BB,
         RANK1_BB,
@@ -428,6 +454,40 @@ public class BitboardConstants {
     };
   }
 
+  // generates Between Bitboards and Line Bitboards
+  static {
+    for (Square from : Square.getSquares()) {
+      int file = from.getFile().ordinal();
+      int rank = from.getRank().ordinal();
+      for (Square to : Square.getSquares()) {
+        BetweenBB[from.ordinal()][to.ordinal()] = new Bitboard();
+        LineBB[from.ordinal()][to.ordinal()] = new Bitboard();
+
+        int fileDelta = to.getFile().ordinal() - file;
+        int rankDelta = to.getRank().ordinal() - rank;
+        if (from == to || (fileDelta != 0 && rankDelta != 0
+            && Math.abs(fileDelta) != Math.abs(rankDelta))) {
+          continue;  // not on the same line
+        }
+
+        // unit vector from the origin square to the destination square
+        int df = Integer.signum(fileDelta);
+        int dr = Integer.signum(rankDelta);
+        for (int f = file + df, r = rank + dr; f != to.getFile().ordinal()
+            || r != to.getRank().ordinal(); f += df, r += dr) {
+          BetweenBB[from.ordinal()][to.ordinal()].or(SquareBB[f * RANKS_LENGTH + r]);
+        }
+        for (int t = -RANKS_LENGTH; t <= RANKS_LENGTH; t++) {
+          int f = file + t * df;
+          int r = rank + t * dr;
+          if (0 <= f && f < FILES_LENGTH && 0 <= r && r < RANKS_LENGTH) {
+            LineBB[from.ordinal()][to.ordinal()].or(SquareBB[f * RANKS_LENGTH + r]);
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Returns a PAWN bitboard with the specified color and square.
    *
@@ -502,6 +562,30 @@ public class BitboardConstants {
     return RookStepEffectBB[square.ordinal()];
   }
 
+  /**
+   * Returns a bitboard of the squares between the two specified squares, excluding both of them.
+   * If the squares are not on the same rank, file or diagonal, the bitboard is empty.
+   *
+   * @param square1 a square
+   * @param square2 a square
+   * @return  the between bitboard
+   */
+  public static Bitboard getBetweenBitboard(final Square square1, final Square square2) {
+    return BetweenBB[square1.ordinal()][square2.ordinal()];
+  }
+
+  /**
+   * Returns a bitboard of the whole line (rank, file or diagonal) passing through the two specified
+   * squares. If the squares are not on the same line, the bitboard is empty.
+   *
+   * @param square1 a square
+   * @param square2 a square
+   * @return  the line bitboard
+   */
+  public static Bitboard getLineBitboard(final Square square1, final Square square2) {
+    return LineBB[square1.ordinal()][square2.ordinal()];
+  }
+
   /**
    * Returns a BISHOP sliding effect bitboard with the specified square and the occupied bitboard.
    *
@@ -510,7 +594,7 @@ public class BitboardConstants {
    * @return  the effects bitboard
    */
   public static Bitboard getBishopSlidingEffectBitboard(final Square square, final Bitboard occupied) {
-    Bitboard block = and(occupied, BishopMaskBB[square.ordinal()]);
+    long block = occupied.merge(BishopMaskBB[square.ordinal()]);
     return BishopAttack[BishopAttackIndex[square.ordinal()]
         + occupiedToIndex(block, BishopMagics[square.ordinal()], BishopShift[square.ordinal()])];
   }
@@ -523,11 +607,30 @@ public class BitboardConstants {
    * @return  the effects bitboard
    */
   public static Bitboard getRookSlidingEffectBitboard(final Square square, final Bitboard occupied) {
-    Bitboard block = and(occupied, RookMaskBB[square.ordinal()]);
+    long block = occupied.merge(RookMaskBB[square.ordinal()]);
     return RookAttack[RookAttackIndex[square.ordinal()]
         + occupiedToIndex(block, RookMagics[square.ordinal()], RookShift[square.ordinal()])];
   }
 
+  /**
+   * Returns a LANCE sliding effect bitboard with the specified color and square and the occupied
+   * bitboard. Unlike {@link #newLanceSlidingEffectBitboard}, it returns a shared bitboard without
+   * creating any bitboard, so it must not be modified.
+   *
+   * @param color color of the lance
+   * @param square square the piece exists
+   * @param occupied  occupied bitboard
+   * @return  the effects bitboard
+   */
+  public static Bitboard getLanceSlidingEffectBitboard(final Color color, final Square square,
+      final Bitboard occupied) {
+    int file = square.getFile().ordinal();
+    long bits = file < 7
+        ? occupied.lower() >>> (RANKS_LENGTH * file + 1)
+        : occupied.upper() >>> (RANKS_LENGTH * (file - 7) + 1);
+    return LanceAttack[color.ordinal()][square.ordinal()][(int) bits & 0x7f];
+  }
+
   /**
    * Returns a new LANCE sliding effect bitboard with the specified color and square
    * and the occupied bitboard.
@@ -539,13 +642,17 @@ public class BitboardConstants {
    */
   public static Bitboard newLanceSlidingEffectBitboard(final Color color, final Square square,
       final Bitboard occupied) {
-    return and(getRookSlidingEffectBitboard(square, occupied),
-        ForwardRanksBB[color.ordinal()][square.getRank().ordinal()]);
+    return getLanceSlidingEffectBitboard(color, square, occupied).newInstance();
   }
 
   // calculate the index of the sliding array from the occupied bitboard
   private static int occupiedToIndex(Bitboard occ, long magic, int shiftBits) {
-    return (int) ((occ.merge() * magic) >>> shiftBits);
+    return occupiedToIndex(occ.merge(), magic, shiftBits);
+  }
+
+  // calculate the index of the sliding array from the merged occupied bitboard
+  private static int occupiedToIndex(long merged, long magic, int shiftBits) {
+    return (int) ((merged * magic) >>> shiftBits);
   }
 
   /**
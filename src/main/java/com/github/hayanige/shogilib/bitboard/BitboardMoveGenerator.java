@@ -1,11 +1,11 @@
 package com.github.hayanige.shogilib.bitboard;
 
 import static com.github.hayanige.shogilib.Color.*;
+import static com.github.hayanige.shogilib.Position.MAX_MOVES;
 import static com.github.hayanige.shogilib.PieceType.*;
 import static com.github.hayanige.shogilib.Rank.*;
 import static com.github.hayanige.shogilib.Square.Direction.N;
 import static com.github.hayanige.shogilib.Square.Direction.S;
-import static com.github.hayanige.shogilib.bitboard.Bitboard.and;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.*;
 
 import com.github.hayanige.shogilib.Color;
@@ -15,66 +15,254 @@ import com.github.hayanige.shogilib.Piece;
 import com.github.hayanige.shogilib.PieceType;
 import com.github.hayanige.shogilib.Square;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 class BitboardMoveGenerator {
 
+  // the piece types moving like gold
+  private static final PieceType[] GOLD_PIECE_TYPES = new PieceType[] {
+      GOLD, PRO_PAWN, PRO_LANCE, PRO_KNIGHT, PRO_SILVER
+  };
+
   // generates genuine legal moves
   static List<Move> getLegalMoves(final PositionBitboardImpl position) {
-    List<Move> moves = getPseudoLegalMoves(position);
-    Iterator<Move> itr = moves.iterator();
-    while (itr.hasNext()) {
-      Move move = itr.next();
-      position.doMove(move);
+    int[] moves = new int[MAX_MOVES];
+    return toMoveList(moves, generateLegalMoves(position, moves));
+  }
+
+  // pseudo-legal moves may include moves that leave the king checked.
+  static List<Move> getPseudoLegalMoves(final PositionBitboardImpl position) {
+    int[] moves = new int[MAX_MOVES];
+    return toMoveList(moves, generatePseudoLegalMoves(position, moves));
+  }
+
+  // generates genuine legal moves into the buffer and returns the number of them
+  static int generateLegalMoves(final PositionBitboardImpl position, final int[] moves) {
+    int size = position.isKingAttacked()
+        ? generateEvasionMoves(position, moves)
+        : generatePseudoLegalMoves(position, moves);
+
+    // The legality is decided by bitboard masks computed once for the position, instead of
+    // doing and undoing every move.
+    Color us = position.getSideToMove();
+    Square ksq = position.getKingSquare(us);
+    Bitboard pinned = position.getPinnedBitboard(us, position.pinnedBB);
+    Bitboard target = getEvasionTarget(position, ksq, position.legalTargetBB);
+    // only a checking move can be a perpetual check to be removed
+    Square enemyKsq = position.getKingSquare(us.getOpponent());
+    Bitboard discoverers = position.mayRepeat() && enemyKsq != null
+        ? position.getBlockerBitboard(us.getOpponent(), us, position.discoverersBB) : null;
+
+    int legalSize = 0;
+    for (int i = 0; i < size; i++) {
+      if (isLegal(position, Move.valueOf(moves[i]), ksq, pinned, target, enemyKsq,
+          discoverers)) {
+        moves[legalSize++] = moves[i];
+      }
+    }
+    return legalSize;
+  }
+
+  // Generates legal moves checking the enemy king into the buffer and returns the number of them.
+  // The check is tested before the legality, since most moves don't check.
+  static int generateCheckMoves(final PositionBitboardImpl position, final int[] moves) {
+    Color us = position.getSideToMove();
+    Square enemyKsq = position.getKingSquare(us.getOpponent());
+    if (enemyKsq == null) {
+      return 0;
+    }
+    int size = position.isKingAttacked()
+        ? generateEvasionMoves(position, moves)
+        : generatePseudoLegalMoves(position, moves);
+
+    Square ksq = position.getKingSquare(us);
+    Bitboard pinned = position.getPinnedBitboard(us, position.pinnedBB);
+    Bitboard target = getEvasionTarget(position, ksq, position.legalTargetBB);
+    // our pieces between our sliders and the enemy king discover a check by leaving the line
+    Bitboard discoverers =
+        position.getBlockerBitboard(us.getOpponent(), us, position.discoverersBB);
+
+    int checkSize = 0;
+    for (int i = 0; i < size; i++) {
+      Move move = Move.valueOf(moves[i]);
+      if (givesCheck(position, move, enemyKsq, discoverers)
+          && isLegal(position, move, ksq, pinned, target, enemyKsq,
+              position.mayRepeat() ? discoverers : null)) {
+        moves[checkSize++] = moves[i];
+      }
+    }
+    return checkSize;
+  }
+
+  // Does the pseudo-legal move check the enemy king?
+  private static boolean givesCheck(final PositionBitboardImpl position, final Move move,
+      final Square enemyKsq, final Bitboard discoverers) {
+    Color them = position.getSideToMove().getOpponent();
+    Square to = move.getToSquare();
+    PieceType pt;
+    if (move.isDrop()) {
+      pt = move.getPieceType();
+    } else {
+      Square from = move.getFromSquare();
+      if (discoverers.contains(from) && !getLineBitboard(enemyKsq, from).contains(to)) {
+        return true;
+      }
+      Piece piece = position.getPiece(from);
+      pt = move.isPromote() ? piece.getPromoted().getPieceType() : piece.getPieceType();
+    }
+
+    // The piece on the destination checks the king if the same piece of the enemy on the king
+    // square is effective for the destination. A sliding effect blocked by the origin of the
+    // move is not a problem, since the piece can't move along the line away from the king
+    // unless the king is already checked.
+    Bitboard occ = position.getOccupiedBitboard();
+    return switch (pt) {
+      case PAWN -> getPawnEffectBitboard(them, enemyKsq).contains(to);
+      case LANCE -> getLanceSlidingEffectBitboard(them, enemyKsq, occ).contains(to);
+      case KNIGHT -> getKnightEffectBitboard(them, enemyKsq).contains(to);
+      case SILVER -> getSilverEffectBitboard(them, enemyKsq).contains(to);
+      case GOLD, PRO_PAWN, PRO_LANCE, PRO_KNIGHT, PRO_SILVER ->
+          getGoldEffectBitboard(them, enemyKsq).contains(to);
+      case BISHOP -> getBishopSlidingEffectBitboard(enemyKsq, occ).contains(to);
+      case ROOK -> getRookSlidingEffectBitboard(enemyKsq, occ).contains(to);
+      case HORSE -> getBishopSlidingEffectBitboard(enemyKsq, occ).contains(to)
+          || getKingEffectBitboard(enemyKsq).contains(to);
+      case DRAGON -> getRookSlidingEffectBitboard(enemyKsq, occ).contains(to)
+          || getKingEffectBitboard(enemyKsq).contains(to);
+      default -> false;
+    };
+  }
+
+  // generates pseudo-legal moves into the buffer and returns the number of them
+  static int generatePseudoLegalMoves(final PositionBitboardImpl position, final int[] moves) {
+    Bitboard target = position.targetBB.set(ALL_BB)
+        .andNot(position.getColorBitboard(position.getSideToMove()));
+    int size = generateNonDropMoves(position, moves, 0, target, target);
+    return generateDropMoves(position, moves, size, position.getUnoccupiedBitboard());
+  }
+
+  // Generates pseudo-legal moves evading the check into the buffer and returns the number of them.
+  // Only moves of the king, captures of the checker and interpositions (including drops) between
+  // the king and the checker are generated. It must be called only when the king is checked.
+  static int generateEvasionMoves(final PositionBitboardImpl position, final int[] moves) {
+    Color us = position.getSideToMove();
+    Square ksq = position.getKingSquare(us);
+    Bitboard checkers = position.getCheckerBitboard();
+    assert !checkers.isZero();
+
+    Bitboard kingTarget = position.kingTargetBB.set(ALL_BB).andNot(position.getColorBitboard(us));
+    if (checkers.popCount() > 1) {
+      // only the king can move against a double check
+      return generateKingMoves(position, moves, 0, kingTarget);
+    }
+
+    Square checker = position.targetBB.set(checkers).getNextSquare();
+    Bitboard between = getBetweenBitboard(ksq, checker);
+    Bitboard target = position.targetBB.set(between).or(checkers);
+    int size = generateNonDropMoves(position, moves, 0, target, kingTarget);
+    return generateDropMoves(position, moves, size, between);
+  }
 
-      if (position.isKingAttacked(position.getSideToMove().getOpponent())) {
-        // removes hand that leaves the king checked
-        itr.remove();
-      } else if (move.isDrop() && move.getPieceType() == PAWN && position.isKingAttacked()) {
+  // Returns the destination squares of non-king pieces that don't leave the king checked.
+  // If the king is not checked, any square is fine. If the king is checked by one piece, the piece
+  // must be captured or interposed. If the king is checked by two pieces, only the king can move.
+  // The squares against a single check are stored into the result bitboard.
+  private static Bitboard getEvasionTarget(final PositionBitboardImpl position, final Square ksq,
+      final Bitboard result) {
+    Bitboard checkers = position.getCheckerBitboard();
+    if (checkers.isZero()) {
+      return ALL_BB;
+    } else if (checkers.popCount() > 1) {
+      return ZERO_BB;
+    } else {
+      Square checker = result.set(checkers).getNextSquare();
+      return result.set(getBetweenBitboard(ksq, checker)).or(checkers);
+    }
+  }
+
+  // Is the pseudo-legal move legal? The discoverers are the pieces discovering a check to the
+  // enemy king, or null if the move can't be a fourfold repetition.
+  private static boolean isLegal(final PositionBitboardImpl position, final Move move,
+      final Square ksq, final Bitboard pinned, final Bitboard target, final Square enemyKsq,
+      final Bitboard discoverers) {
+    Color us = position.getSideToMove();
+    Square to = move.getToSquare();
+
+    if (move.isDrop()) {
+      if (!target.contains(to)) {
+        return false;
+      }
+      if (move.getPieceType() == PAWN && enemyKsq != null
+          && getPawnEffectBitboard(us, to).contains(enemyKsq)) {
         // removes drop pawn mate
-        if (getLegalMoves(position).size() == 0) {
-          itr.remove();
+        return !position.isPawnDropMate(to);
+      }
+    } else {
+      Square from = move.getFromSquare();
+      if (from == ksq) {
+        // the king must not move to the square where the enemy piece is effective.
+        // the king itself is removed from the occupied bitboard not to block sliding effects.
+        if (position.isAttackedWithoutKing(us.getOpponent(), to)) {
+          return false;
+        }
+      } else {
+        if (!target.contains(to)) {
+          return false;
+        }
+        // a pinned piece must move along the line between the king and the pinning piece
+        if (pinned.contains(from) && !getLineBitboard(ksq, from).contains(to)) {
+          return false;
         }
-      } else if (position.isRepetition() && position.isKingAttacked()) {
-        // removes fourfold repetition for the king
-        itr.remove();
       }
+    }
 
+    if (discoverers != null && givesCheck(position, move, enemyKsq, discoverers)) {
+      // removes fourfold repetition for the king
+      position.doMove(move);
+      boolean repetition = position.isRepetition() && position.isKingAttacked();
       position.undoMove();
+      return !repetition;
     }
-    return moves;
+    return true;
   }
 
-  // pseudo-legal moves may include moves that leave the king checked.
-  static List<Move> getPseudoLegalMoves(final PositionBitboardImpl position) {
-    List<Move> moves = new ArrayList<>();
-    generateNonDropMoves(position, moves);
-    generateDropMoves(position, moves);
-    return moves;
+  private static List<Move> toMoveList(final int[] moves, final int size) {
+    List<Move> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(Move.valueOf(moves[i]));
+    }
+    return list;
   }
 
-  private static void generateNonDropMoves(final PositionBitboardImpl position, final List<Move> moves) {
-    generatePawnMoves(position, moves);
-    generateKnightMoves(position, moves);
-    generateSilverMoves(position, moves);
-    generateGoldGroupMoves(position, moves);
-    generateKingMoves(position, moves);
-    generateLanceMoves(position, moves);
-    generateBishopMoves(position, moves);
-    generateRookMoves(position, moves);
-    generateHorseMoves(position, moves);
-    generateDragonMoves(position, moves);
+  // generates moves of the pieces to the target squares, and moves of the king to the king
+  // target squares.
+  private static int generateNonDropMoves(final PositionBitboardImpl position, final int[] moves,
+      int size, final Bitboard target, final Bitboard kingTarget) {
+    size = generatePawnMoves(position, moves, size, target);
+    size = generateKnightMoves(position, moves, size, target);
+    size = generateSilverMoves(position, moves, size, target);
+    size = generateGoldGroupMoves(position, moves, size, target);
+    size = generateKingMoves(position, moves, size, kingTarget);
+    size = generateLanceMoves(position, moves, size, target);
+    size = generateBishopMoves(position, moves, size, target);
+    size = generateRookMoves(position, moves, size, target);
+    size = generateHorseMoves(position, moves, size, target);
+    size = generateDragonMoves(position, moves, size, target);
+    return size;
   }
 
-  private static void generatePawnMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generatePawnMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Piece pawn = PAWN.getColoredPiece(color);
-    Bitboard fromBB = position.getPieceBitboard(pawn).newInstance();
+    Bitboard toBB = position.toBB.set(position.getPieceBitboard(pawn));
     // an effect of a pawn is the next square of the square that the pawn exists
-    Bitboard toBB = color == BLACK ? fromBB.rightShift() : fromBB.leftShift();
-    toBB.andNot(friendBB);
+    if (color == BLACK) {
+      toBB.rightShift();
+    } else {
+      toBB.leftShift();
+    }
+    toBB.and(target);
 
     while (toBB.hasNext()) {
       Square to = toBB.getNextSquare();
@@ -83,224 +271,230 @@ class BitboardMoveGenerator {
       if ((color == BLACK && to.getRank() == RANK_1) ||
           (color == WHITE && to.getRank() == RANK_9)
       ) {
-        moves.add(Move.makeMovePromote(from, to));
+        moves[size++] = Move.encodeMovePromote(from, to);
       } else if (from.canPromote(color) || to.canPromote(color)) {
-        moves.add(Move.makeMove(from, to));
-        moves.add(Move.makeMovePromote(from, to));
+        moves[size++] = Move.encodeMove(from, to);
+        moves[size++] = Move.encodeMovePromote(from, to);
       } else {
-        moves.add(Move.makeMove(from, to));
+        moves[size++] = Move.encodeMove(from, to);
       }
     }
+    return size;
   }
 
-  private static void generateKnightMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateKnightMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Piece knight = KNIGHT.getColoredPiece(color);
-    Bitboard fromBB = position.getPieceBitboard(knight).newInstance();
+    Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(knight));
 
     while (fromBB.hasNext()) {
       Square from = fromBB.getNextSquare();
-      Bitboard toBB = getKnightEffectBitboard(color, from).newInstance();
-      toBB.andNot(friendBB);
+      Bitboard toBB = position.toBB.set(getKnightEffectBitboard(color, from)).and(target);
       while (toBB.hasNext()) {
         Square to = toBB.getNextSquare();
         if ((color == BLACK && (to.getRank() == RANK_1 || to.getRank() == RANK_2)) ||
             (color == WHITE && (to.getRank() == RANK_9 || to.getRank() == RANK_8))
         ) {
-          moves.add(Move.makeMovePromote(from, to));
+          moves[size++] = Move.encodeMovePromote(from, to);
         } else if (to.canPromote(color)) {
-          moves.add(Move.makeMove(from, to));
-          moves.add(Move.makeMovePromote(from, to));
+          moves[size++] = Move.encodeMove(from, to);
+          moves[size++] = Move.encodeMovePromote(from, to);
         } else {
-          moves.add(Move.makeMove(from, to));
+          moves[size++] = Move.encodeMove(from, to);
         }
       }
     }
+    return size;
   }
 
-  private static void generateSilverMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateSilverMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Piece silver = SILVER.getColoredPiece(color);
-    Bitboard fromBB = position.getPieceBitboard(silver).newInstance();
+    Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(silver));
 
     while (fromBB.hasNext()) {
       Square from = fromBB.getNextSquare();
-      Bitboard toBB = getSilverEffectBitboard(color, from).newInstance();
-      toBB.andNot(friendBB);
+      Bitboard toBB = position.toBB.set(getSilverEffectBitboard(color, from)).and(target);
       while (toBB.hasNext()) {
         Square to = toBB.getNextSquare();
-        moves.add(Move.makeMove(from, to));
+        moves[size++] = Move.encodeMove(from, to);
         if (from.canPromote(color) || to.canPromote(color)) {
-          moves.add(Move.makeMovePromote(from, to));
+          moves[size++] = Move.encodeMovePromote(from, to);
         }
       }
     }
+    return size;
   }
 
-  private static void generateGoldGroupMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateGoldGroupMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
-    PieceType[] goldPieces = new PieceType[]{GOLD, PRO_PAWN, PRO_LANCE, PRO_KNIGHT, PRO_SILVER};
-
-    for (PieceType goldPiece : goldPieces) {
+    for (PieceType goldPiece : GOLD_PIECE_TYPES) {
       Piece gold = goldPiece.getColoredPiece(color);
-      Bitboard fromBB = position.getPieceBitboard(gold).newInstance();
+      Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(gold));
       while (fromBB.hasNext()) {
         Square from = fromBB.getNextSquare();
-        Bitboard toBB = getGoldEffectBitboard(color, from).newInstance();
-        toBB.andNot(friendBB);
+        Bitboard toBB = position.toBB.set(getGoldEffectBitboard(color, from)).and(target);
         while (toBB.hasNext()) {
           Square to = toBB.getNextSquare();
-          moves.add(Move.makeMove(from, to));
+          moves[size++] = Move.encodeMove(from, to);
         }
       }
     }
+    return size;
   }
 
-  private static void generateKingMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateKingMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Square from = position.getKingSquare(color);  // King is only one
-    Bitboard toBB = getKingEffectBitboard(from).newInstance();
-    toBB.andNot(friendBB);
+    if (from == null) {
+      return size;  // e.g. the attacker of Tsume Shogi doesn't have the king
+    }
+    Bitboard toBB = position.toBB.set(getKingEffectBitboard(from)).and(target);
     while (toBB.hasNext()) {
       Square to = toBB.getNextSquare();
-      moves.add(Move.makeMove(from, to));
+      moves[size++] = Move.encodeMove(from, to);
     }
+    return size;
   }
 
-  private static void generateLanceMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateLanceMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Bitboard occupiedBB = position.getOccupiedBitboard();
     Piece lance = LANCE.getColoredPiece(color);
-    Bitboard fromBB = position.getPieceBitboard(lance).newInstance();
+    Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(lance));
 
     while (fromBB.hasNext()) {
       Square from = fromBB.getNextSquare();
-      Bitboard toBB = newLanceSlidingEffectBitboard(color, from, occupiedBB);
-      toBB.andNot(friendBB);
+      Bitboard toBB = position.toBB.set(getLanceSlidingEffectBitboard(color, from, occupiedBB))
+          .and(target);
       while (toBB.hasNext()) {
         Square to = toBB.getNextSquare();
         if ((color == BLACK && to.getRank() == RANK_1) ||
             (color == WHITE && to.getRank() == RANK_9)
         ) {
-          moves.add(Move.makeMovePromote(from, to));
+          moves[size++] = Move.encodeMovePromote(from, to);
         } else if (from.canPromote(color) || to.canPromote(color)) {
-          moves.add(Move.makeMove(from, to));
-          moves.add(Move.makeMovePromote(from, to));
+          moves[size++] = Move.encodeMove(from, to);
+          moves[size++] = Move.encodeMovePromote(from, to);
         } else {
-          moves.add(Move.makeMove(from, to));
+          moves[size++] = Move.encodeMove(from, to);
         }
       }
     }
+    return size;
   }
 
-  private static void generateBishopMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateBishopMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Bitboard occupiedBB = position.getOccupiedBitboard();
     Piece bishop = BISHOP.getColoredPiece(color);
-    Bitboard fromBB = position.getPieceBitboard(bishop).newInstance();
+    Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(bishop));
 
     while (fromBB.hasNext()) {
       Square from = fromBB.getNextSquare();
-      Bitboard toBB = getBishopSlidingEffectBitboard(from, occupiedBB).newInstance();
-      toBB.andNot(friendBB);
+      Bitboard toBB = position.toBB.set(getBishopSlidingEffectBitboard(from, occupiedBB))
+          .and(target);
       while (toBB.hasNext()) {
         Square to = toBB.getNextSquare();
-        moves.add(Move.makeMove(from, to));
+        moves[size++] = Move.encodeMove(from, to);
         if (from.canPromote(color) || to.canPromote(color)) {
-          moves.add(Move.makeMovePromote(from, to));
+          moves[size++] = Move.encodeMovePromote(from, to);
         }
       }
     }
+    return size;
   }
 
-  private static void generateRookMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateRookMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Bitboard occupiedBB = position.getOccupiedBitboard();
     Piece rook = ROOK.getColoredPiece(color);
-    Bitboard fromBB = position.getPieceBitboard(rook).newInstance();
+    Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(rook));
 
     while (fromBB.hasNext()) {
       Square from = fromBB.getNextSquare();
-      Bitboard toBB = getRookSlidingEffectBitboard(from, occupiedBB).newInstance();
-      toBB.andNot(friendBB);
+      Bitboard toBB = position.toBB.set(getRookSlidingEffectBitboard(from, occupiedBB))
+          .and(target);
       while (toBB.hasNext()) {
         Square to = toBB.getNextSquare();
-        moves.add(Move.makeMove(from, to));
+        moves[size++] = Move.encodeMove(from, to);
         if (from.canPromote(color) || to.canPromote(color)) {
-          moves.add(Move.makeMovePromote(from, to));
+          moves[size++] = Move.encodeMovePromote(from, to);
         }
       }
     }
+    return size;
   }
 
-  private static void generateHorseMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateHorseMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Piece horse = HORSE.getColoredPiece(color);
     Bitboard occupiedBB = position.getOccupiedBitboard();
-    Bitboard fromBB = position.getPieceBitboard(horse).newInstance();
+    Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(horse));
 
     while (fromBB.hasNext()) {
       Square from = fromBB.getNextSquare();
-      Bitboard toBB = getBishopSlidingEffectBitboard(from, occupiedBB).newInstance();
-      toBB.or(getRookStepEffectBitboard(from)).andNot(friendBB);
+      Bitboard toBB = position.toBB.set(getBishopSlidingEffectBitboard(from, occupiedBB))
+          .or(getRookStepEffectBitboard(from)).and(target);
       while (toBB.hasNext()) {
         Square to = toBB.getNextSquare();
-        moves.add(Move.makeMove(from, to));
+        moves[size++] = Move.encodeMove(from, to);
       }
     }
+    return size;
   }
 
-  private static void generateDragonMoves(PositionBitboardImpl position, List<Move> moves) {
+  private static int generateDragonMoves(PositionBitboardImpl position, int[] moves, int size,
+      Bitboard target) {
     Color color = position.getSideToMove();
-    Bitboard friendBB = position.getColorBitboard(color);
     Bitboard occupiedBB = position.getOccupiedBitboard();
     Piece dragon = DRAGON.getColoredPiece(color);
-    Bitboard fromBB = position.getPieceBitboard(dragon).newInstance();
+    Bitboard fromBB = position.fromBB.set(position.getPieceBitboard(dragon));
 
     while (fromBB.hasNext()) {
       Square from = fromBB.getNextSquare();
-      Bitboard toBB = getRookSlidingEffectBitboard(from, occupiedBB).newInstance();
-      toBB.or(getBishopStepEffectBitboard(from)).andNot(friendBB);
+      Bitboard toBB = position.toBB.set(getRookSlidingEffectBitboard(from, occupiedBB))
+          .or(getBishopStepEffectBitboard(from)).and(target);
       while (toBB.hasNext()) {
         Square to = toBB.getNextSquare();
-        moves.add(Move.makeMove(from, to));
+        moves[size++] = Move.encodeMove(from, to);
       }
     }
+    return size;
   }
 
-  private static void generateDropMoves(final PositionBitboardImpl position, final List<Move> moves) {
+  // generates drop moves to the target squares, which must be unoccupied
+  private static int generateDropMoves(final PositionBitboardImpl position, final int[] moves,
+      int size, final Bitboard target) {
     Color color = position.getSideToMove();
 
     Hand hand = position.getHand(color);
     // do nothing if the hand is empty
     if (hand.isZero()) {
-      return;
+      return size;
     }
 
-    Bitboard unoccupied = position.getUnoccupiedBitboard();
-
     // generate drop pawn
     if (hand.exists(PAWN)) {
-      Bitboard rank29Target;
-
       // remove drop pawn moves if the destination is the first rank
+      Bitboard rank29Target = position.toBB.set(target);
       if (color == BLACK) {
-        rank29Target = and(unoccupied, ForwardRanksBB[color.getOpponent().ordinal()][0]);
+        rank29Target.and(ForwardRanksBB[color.getOpponent().ordinal()][0]);
       } else {
-        rank29Target = and(unoccupied, ForwardRanksBB[color.getOpponent().ordinal()][8]);
+        rank29Target.and(ForwardRanksBB[color.getOpponent().ordinal()][8]);
       }
 
       // remove Nifu (double pawn in a file)
       Piece pawn = PAWN.getColoredPiece(color);
-      Bitboard pawnBB = position.getPieceBitboard(pawn).newInstance();
+      Bitboard pawnBB = position.fromBB.set(position.getPieceBitboard(pawn));
       while (pawnBB.hasNext()) {
         Square pawnSquare = pawnBB.getNextSquare();
         rank29Target.andNot(FILE_BB[pawnSquare.getFile().ordinal()]);
@@ -309,28 +503,15 @@ class BitboardMoveGenerator {
       // generate moves
       while (rank29Target.hasNext()) {
         Square to = rank29Target.getNextSquare();
-        moves.add(Move.makeMoveDrop(PAWN, to));
+        moves[size++] = Move.encodeMoveDrop(PAWN, to);
       }
     }
 
     if (!hand.existsExceptPawn()) {
-      return;
-    }
-
-    Bitboard rank1Target;
-    Bitboard rank2Target;
-    Bitboard rank39Target;
-    if (color == BLACK) {
-      rank1Target = and(RANK1_BB, unoccupied);
-      rank2Target = and(RANK2_BB, unoccupied);
-      rank39Target = and(ForwardRanksBB[WHITE.ordinal()][1], unoccupied);
-    } else {
-      rank1Target = and(RANK9_BB, unoccupied);
-      rank2Target = and(RANK8_BB, unoccupied);
-      rank39Target = and(ForwardRanksBB[BLACK.ordinal()][7], unoccupied);
+      return size;
     }
 
-    PieceType[] piecesInHand = new PieceType[6];
+    PieceType[] piecesInHand = position.piecesInHand;
     int numHands = 0;
     int numNight = 0;
     int numLanceNight = 0;
@@ -350,27 +531,32 @@ class BitboardMoveGenerator {
     }
 
     // remove drop lance moves and drop knight moves if the destination is the first rank
+    Bitboard rank1Target = position.toBB.set(color == BLACK ? RANK1_BB : RANK9_BB).and(target);
     while (rank1Target.hasNext()) {
       Square to = rank1Target.getNextSquare();
       for (int i = 0; i < numHands - numLanceNight; i++) {
-        moves.add(Move.makeMoveDrop(piecesInHand[i], to));
+        moves[size++] = Move.encodeMoveDrop(piecesInHand[i], to);
       }
     }
 
     // remove drop knight moves if the destination is the second rank
+    Bitboard rank2Target = position.toBB.set(color == BLACK ? RANK2_BB : RANK8_BB).and(target);
     while (rank2Target.hasNext()) {
       Square to = rank2Target.getNextSquare();
       for (int i = 0; i < numHands - numNight; i++) {
-        moves.add(Move.makeMoveDrop(piecesInHand[i], to));
+        moves[size++] = Move.encodeMoveDrop(piecesInHand[i], to);
       }
     }
 
     // generate all drop moves if the destination is between the third rank and the ninth rank
+    Bitboard rank39Target = position.toBB.set(color == BLACK
+        ? ForwardRanksBB[WHITE.ordinal()][1] : ForwardRanksBB[BLACK.ordinal()][7]).and(target);
     while (rank39Target.hasNext()) {
       Square to = rank39Target.getNextSquare();
       for (int i = 0; i < numHands; i++) {
-        moves.add(Move.makeMoveDrop(piecesInHand[i], to));
+        moves[size++] = Move.encodeMoveDrop(piecesInHand[i], to);
       }
     }
+    return size;
   }
 }
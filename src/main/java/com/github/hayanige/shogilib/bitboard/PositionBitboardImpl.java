@@ -22,16 +22,20 @@ import static com.github.hayanige.shogilib.PieceType.ROOK;
 import static com.github.hayanige.shogilib.PieceType.SILVER;
 import static com.github.hayanige.shogilib.Rank.RANKS_LENGTH;
 import static com.github.hayanige.shogilib.Square.SQUARES_LENGTH;
-import static com.github.hayanige.shogilib.bitboard.Bitboard.and;
-import static com.github.hayanige.shogilib.bitboard.Bitboard.or;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.ALL_BB;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.ZERO_BB;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getBetweenBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getBishopSlidingEffectBitboard;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getBishopStepEffectBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getGoldEffectBitboard;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getKingEffectBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getKnightEffectBitboard;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getLanceSlidingEffectBitboard;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getLineBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getSquareBitboard;
-import static com.github.hayanige.shogilib.bitboard.BitboardConstants.newLanceSlidingEffectBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getPawnEffectBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getRookSlidingEffectBitboard;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getRookStepEffectBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getSilverEffectBitboard;
 
 import com.github.hayanige.shogilib.Position;
@@ -42,11 +46,14 @@ import com.github.hayanige.shogilib.Hand;
 import com.github.hayanige.shogilib.Move;
 import com.github.hayanige.shogilib.Piece;
 import com.github.hayanige.shogilib.PieceType;
+import com.github.hayanige.shogilib.PositionSnapshot;
 import com.github.hayanige.shogilib.Rank;
 import com.github.hayanige.shogilib.Square;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Position implementation using Bitboard.
@@ -59,19 +66,56 @@ public class PositionBitboardImpl implements Position {
   private final Square[] kingSquare;  // squares where kings exist
   private int moveCounter;
   private static final int MAX_PLY = 2000;  // not consider any case over this max ply for now
-  private final Map<Integer, Piece> capturedMap;
+
+  // Per-ply state stack indexed by the number of moves played on this instance. The state of
+  // each ply is pushed in doMove and popped in undoMove without any recomputation.
+  private int ply;
   private final Move[] lastMoves; // last moves history
+  private final Piece[] capturedPieces; // pieces captured by the last moves
+  private final Bitboard[] checkerHistory; // checker bitboards of each ply
   private long zobristKey;
   private final long[] zobristHistory;
-  private int zobristIndex;
 
   private final Bitboard occupiedBB;    // occupied bitboard of all pieces
   private final Bitboard[] pieceOccupiedBB; // occupied bitboards for each piece
   private final Bitboard[] colorOccupiedBB; // occupied bitboards for each color
 
   // checker bitboard: checker pieces against the king of the current side to move.
+  // It must not be modified outside of updateCheckerBitboard because it is shared with the checker
+  // history.
   private Bitboard checkerBB;
 
+  // scratch bitboards for attack queries not to create bitboards in hot paths
+  private final Bitboard attackersBB = new Bitboard();
+  private final Bitboard kinglessOccupiedBB = new Bitboard();
+  private final Bitboard defendersBB = new Bitboard();
+  private final Bitboard enemyPinnedBB = new Bitboard();
+  private final Bitboard escapesBB = new Bitboard();
+  private final Bitboard snipersBB = new Bitboard();
+  private final Bitboard betweenBB = new Bitboard();
+
+  // scratch bitboards and pieces for BitboardMoveGenerator not to create objects in generating
+  // moves. They are used only during one call of the generator.
+  final Bitboard targetBB = new Bitboard();       // destinations of the pieces except the king
+  final Bitboard kingTargetBB = new Bitboard();   // destinations of the king
+  final Bitboard legalTargetBB = new Bitboard();  // destinations not leaving the king checked
+  final Bitboard pinnedBB = new Bitboard();       // pieces pinned against the king
+  final Bitboard discoverersBB = new Bitboard();  // pieces discovering a check
+  final Bitboard fromBB = new Bitboard();         // pieces to move
+  final Bitboard toBB = new Bitboard();           // destinations of a piece
+  final PieceType[] piecesInHand = new PieceType[6];  // kinds of pieces to drop
+
+  // attack map: the number of pieces of each color attacking each square.
+  // It is null unless the attack map is enabled, and is updated in putPiece() and removePiece().
+  private int[][] attackCounts;
+  private final Bitboard slidersBB = new Bitboard();  // scratch for sliders blocked by a change
+  private final Bitboard piecesBB = new Bitboard();   // scratch for iterating over pieces
+  private final Bitboard effectsBB = new Bitboard();  // scratch for iterating over effects
+
+  // SFEN of the current position cached until the position is changed
+  private String sfenCache;
+  private final byte[] sfenBuffer = new byte[MAX_SFEN_LENGTH];
+
   private PositionBitboardImpl() {
     board = new Piece[SQUARES_LENGTH];
     for (int i = 0; i < SQUARES_LENGTH; i++) {
@@ -80,12 +124,14 @@ public class PositionBitboardImpl implements Position {
     hands = new Hand[] { new Hand(), new Hand() };
     kingSquare = new Square[COLORS_LENGTH];
     moveCounter = 0;
-    capturedMap = new HashMap<>();
+    ply = 0;
     lastMoves = new Move[MAX_PLY];
     lastMoves[0] = Move.MOVE_NONE;
+    capturedPieces = new Piece[MAX_PLY];
+    capturedPieces[0] = NO_PIECE;
+    checkerHistory = new Bitboard[MAX_PLY];
     zobristKey = 0L;
     zobristHistory = new long[MAX_PLY];
-    zobristIndex = 0;
     pieceOccupiedBB = new Bitboard[PIECES_LENGTH];
     for (Piece piece: Piece.getPieces()) {
       if (piece == NO_PIECE) {
@@ -100,115 +146,271 @@ public class PositionBitboardImpl implements Position {
     occupiedBB = new Bitboard();
   }
 
+  // Creates a deep copy of the given position including the state stack of the played moves.
+  private PositionBitboardImpl(final PositionBitboardImpl other) {
+    board = other.board.clone();
+    sfenCache = other.sfenCache;
+    hands = new Hand[] { new Hand(other.hands[0]), new Hand(other.hands[1]) };
+    sideToMove = other.sideToMove;
+    kingSquare = other.kingSquare.clone();
+    moveCounter = other.moveCounter;
+    ply = other.ply;
+    lastMoves = new Move[MAX_PLY];
+    System.arraycopy(other.lastMoves, 0, lastMoves, 0, ply + 1);
+    capturedPieces = new Piece[MAX_PLY];
+    System.arraycopy(other.capturedPieces, 0, capturedPieces, 0, ply + 1);
+    checkerHistory = new Bitboard[MAX_PLY];
+    for (int i = 0; i <= ply; i++) {
+      checkerHistory[i] = other.checkerHistory[i].newInstance();
+    }
+    checkerBB = checkerHistory[ply];
+    zobristKey = other.zobristKey;
+    zobristHistory = new long[MAX_PLY];
+    System.arraycopy(other.zobristHistory, 0, zobristHistory, 0, ply + 1);
+    occupiedBB = other.occupiedBB.newInstance();
+    pieceOccupiedBB = new Bitboard[PIECES_LENGTH];
+    for (int i = 0; i < PIECES_LENGTH; i++) {
+      pieceOccupiedBB[i] = other.pieceOccupiedBB[i].newInstance();
+    }
+    colorOccupiedBB = new Bitboard[] {
+        other.colorOccupiedBB[0].newInstance(), other.colorOccupiedBB[1].newInstance()
+    };
+    if (other.attackCounts != null) {
+      attackCounts = new int[][] { other.attackCounts[0].clone(), other.attackCounts[1].clone() };
+    }
+  }
+
+  /**
+   * A static factory method returning a new position instance from a snapshot.
+   *
+   * @param snapshot  the snapshot of a position
+   * @return  a new position from the snapshot
+   */
+  public static Position createPositionFromSnapshot(final PositionSnapshot snapshot) {
+    Piece[] board = new Piece[SQUARES_LENGTH];
+    for (Square square : Square.getSquares()) {
+      board[square.ordinal()] = snapshot.getPiece(square);
+    }
+    return createPosition(board, snapshot.getHand(BLACK), snapshot.getHand(WHITE),
+        snapshot.getSideToMove(), snapshot.getMoveCounter());
+  }
+
+  /**
+   * A static factory method returning a new position instance from the pieces on each square, the
+   * hands, the side and the move counter. The given board and hands are copied.
+   *
+   * @param board the pieces on each square in the ordinal order of the squares
+   * @param blackHand the hand of black
+   * @param whiteHand the hand of white
+   * @param sideToMove  the next side to move
+   * @param moveCounter the counter of full moves played
+   * @return  a new position
+   */
+  public static Position createPosition(final Piece[] board, final Hand blackHand,
+      final Hand whiteHand, final Color sideToMove, final int moveCounter) {
+    PositionBitboardImpl position = new PositionBitboardImpl();
+    for (int i = 0; i < SQUARES_LENGTH; i++) {
+      Piece piece = board[i];
+      if (piece != NO_PIECE) {
+        Square square = Square.valueOf(i);
+        position.setPiece(square, piece);
+        if (piece.getPieceType() == KING) {
+          position.kingSquare[piece.getColor().ordinal()] = square;
+        }
+      }
+    }
+    position.sideToMove = BLACK;
+    if (sideToMove == WHITE) {
+      position.changeSide();
+    }
+    position.hands[BLACK.ordinal()] = new Hand(blackHand);
+    position.hands[WHITE.ordinal()] = new Hand(whiteHand);
+    position.zobristKey ^= position.handsHash();
+    position.moveCounter = moveCounter;
+    position.updateCheckerBitboard();
+    position.zobristHistory[position.ply] = position.getZobristHash();
+    return position;
+  }
+
   /**
    * A static factory method returning a new position instance from SFEN.
    *
    * @param sfen  SFEN
    * @return  a new position from SFEN
    */
-  public static Position createPositionFromSfen(String sfen) {
+  public static Position createPositionFromSfen(final CharSequence sfen) {
     PositionBitboardImpl position = new PositionBitboardImpl();
+    position.loadSfen(sfen);
+    return position;
+  }
 
-    if (sfen.equals("startpos")) {
-      sfen = HIRATE_SFEN;
+  @Override
+  public void setSfen(final CharSequence sfen) {
+    clear();
+    try {
+      loadSfen(sfen);
+    } catch (IllegalArgumentException e) {
+      clear();
+      throw e;
     }
+  }
 
-    String[] sfenElements = sfen.split(" ");
-    if (sfenElements.length != 4) {
-      throw new IllegalArgumentException("Invalid SFEN: The number of elements is not enough.");
+  // Makes this position empty without allocating the arrays and the bitboards again.
+  private void clear() {
+    sfenCache = null;
+    Arrays.fill(board, NO_PIECE);
+    hands[BLACK.ordinal()].clear();
+    hands[WHITE.ordinal()].clear();
+    sideToMove = BLACK;
+    Arrays.fill(kingSquare, null);
+    moveCounter = 0;
+    ply = 0;
+    lastMoves[0] = Move.MOVE_NONE;
+    capturedPieces[0] = NO_PIECE;
+    zobristKey = 0L;
+    occupiedBB.clear();
+    for (Bitboard bb : pieceOccupiedBB) {
+      bb.clear();
+    }
+    pieceOccupiedBB[NO_PIECE.ordinal()].set(ALL_BB);
+    colorOccupiedBB[BLACK.ordinal()].clear();
+    colorOccupiedBB[WHITE.ordinal()].clear();
+    if (attackCounts != null) {
+      Arrays.fill(attackCounts[BLACK.ordinal()], 0);
+      Arrays.fill(attackCounts[WHITE.ordinal()], 0);
     }
+    updateCheckerBitboard();
+    zobristHistory[ply] = zobristKey;
+  }
 
-    String[] ranks = sfenElements[0].split("/");
-    if (ranks.length != RANKS_LENGTH) {
-      throw new IllegalArgumentException("Invalid SFEN: The number of ranks is not enough.");
+  // Loads SFEN into this empty position. It scans the characters only once without creating any
+  // string, and sets the pieces directly.
+  private void loadSfen(CharSequence sfen) {
+    if ("startpos".contentEquals(sfen)) {
+      sfen = HIRATE_SFEN;
+    }
+
+    // trailing spaces are ignored
+    int length = sfen.length();
+    while (length > 0 && sfen.charAt(length - 1) == ' ') {
+      length--;
     }
+    int index = 0;
 
     // Set pieces on the board
-    for (int i = 0; i < ranks.length; i++) {
-      int leftSquareIndex = Square.SQ_91.ordinal() + i;
-      int fileOffset = 0;
-      int fileLength = 0;
-      for (int j = 0; j < ranks[i].length(); j++) {
-        if (Character.isDigit(ranks[i].charAt(j))) {
-          int length = ranks[i].charAt(j) - '0';
-          for (int k = 0; k < length; k++) {
-            position.setPiece(Square.valueOf(leftSquareIndex - fileOffset), NO_PIECE);
-            fileOffset += RANKS_LENGTH;
-          }
-          fileLength += length;
-        } else {
-          String pieceUsi;
-          if (ranks[i].charAt(j) == '+') {
-            pieceUsi = ranks[i].substring(j, j + 2);
-            j++;
-          } else {
-            pieceUsi = ranks[i].substring(j, j + 1);
-          }
-          Piece piece = Piece.parseUSI(pieceUsi);
-          if (piece == null) {
-            throw new IllegalArgumentException("Invalid SFEN: A piece is invalid.");
-          }
-          Square square = Square.valueOf(leftSquareIndex - fileOffset);
-          position.setPiece(square, piece);
-          if (piece == Piece.B_KING) {
-            position.kingSquare[BLACK.ordinal()] = square;
-          } else if (piece == Piece.W_KING) {
-            position.kingSquare[WHITE.ordinal()] = square;
-          }
-          fileOffset += RANKS_LENGTH;
-          fileLength++;
+    int rank = 0;
+    int fileLength = 0;
+    for (; index < length && sfen.charAt(index) != ' '; index++) {
+      char c = sfen.charAt(index);
+      if (c == '/') {
+        if (fileLength != 9) {
+          throw new IllegalArgumentException("Invalid SFEN: The number of pieces is not enough.");
         }
+        rank++;
+        if (rank >= RANKS_LENGTH) {
+          throw new IllegalArgumentException("Invalid SFEN: The number of ranks is not enough.");
+        }
+        fileLength = 0;
+      } else if (c >= '0' && c <= '9') {
+        fileLength += c - '0';
+        if (fileLength > 9) {
+          throw new IllegalArgumentException("Invalid SFEN: The number of pieces is not enough.");
+        }
+      } else {
+        boolean promoted = c == '+';
+        if (promoted && ++index < length) {
+          c = sfen.charAt(index);
+        }
+        Piece piece = Piece.parseUSI(c, promoted);
+        if (piece == null) {
+          throw new IllegalArgumentException("Invalid SFEN: A piece is invalid.");
+        }
+        if (fileLength >= 9) {
+          throw new IllegalArgumentException("Invalid SFEN: The number of pieces is not enough.");
+        }
+        Square square = Square.valueOf(Square.SQ_91.ordinal() + rank - fileLength * RANKS_LENGTH);
+        setPiece(square, piece);
+        if (piece == Piece.B_KING) {
+          kingSquare[BLACK.ordinal()] = square;
+        } else if (piece == Piece.W_KING) {
+          kingSquare[WHITE.ordinal()] = square;
+        }
+        fileLength++;
       }
-      if (fileLength != 9) {
-        throw new IllegalArgumentException("Invalid SFEN: The number of pieces is not enough.");
-      }
     }
+    if (rank != RANKS_LENGTH - 1) {
+      throw new IllegalArgumentException("Invalid SFEN: The number of ranks is not enough.");
+    }
+    if (fileLength != 9) {
+      throw new IllegalArgumentException("Invalid SFEN: The number of pieces is not enough.");
+    }
+    index = skipSeparator(sfen, index, length);
 
     // Set side
-    Color color = Color.parseUSI(sfenElements[1]);
-    if (color == null) {
+    char side = sfen.charAt(index++);
+    if ((side != 'b' && side != 'w') || (index < length && sfen.charAt(index) != ' ')) {
       throw new IllegalArgumentException("Invalid SFEN: The side is invalid.");
     }
-    position.sideToMove = BLACK;
-    if (color.equals(WHITE)) {
-      position.changeSide();
+    sideToMove = BLACK;
+    if (side == 'w') {
+      changeSide();
     }
+    index = skipSeparator(sfen, index, length);
 
     // Set hands
-    String fenHands = sfenElements[2];
-    if (!fenHands.equals("-")) {
-      // parse by piece and number of pieces
-      // e.g. "RBGSNLP3g3n17p" -> { "R", "B", "G", "S", "N", "L", "P", "3", "g", "3", "n", "17", "p" }
-      String[] pieceElements = sfenElements[2].split("(?<=\\D)(?=\\d)|(?<=\\d)(?=\\D)|(?=\\D)(?=\\D)");
-      int num = 1;
-      for (String pieceElement : pieceElements) {
-        if (pieceElement.matches("\\d+")) {
-          num = Integer.parseInt(pieceElement);
+    // e.g. "RBGSNLP3g3n17p" -> R, B, G, S, N, L, P, 3 x g, 3 x n, 17 x p
+    if (sfen.charAt(index) == '-') {
+      index++;
+    } else {
+      int num = -1;
+      for (; index < length && sfen.charAt(index) != ' '; index++) {
+        char c = sfen.charAt(index);
+        if (c >= '0' && c <= '9') {
+          num = (num < 0 ? 0 : num * 10) + (c - '0');
           continue;
         }
-        for (int i = 0; i < num; i++) {
-          Piece piece = Piece.parseUSI(pieceElement);
-          if (piece == null) {
-            throw new IllegalArgumentException("Invalid SFEN: The hand is invalid.");
-          }
-          position.addHand(piece);
+        Piece piece = Piece.parseUSI(c, false);
+        if (piece == null || piece.getPieceType() == KING || num > 18) {
+          throw new IllegalArgumentException("Invalid SFEN: The hand is invalid.");
+        }
+        for (int i = 0; i < (num < 0 ? 1 : num); i++) {
+          addHand(piece);
         }
-        num = 1;
+        num = -1;
+      }
+      if (num >= 0) {
+        throw new IllegalArgumentException("Invalid SFEN: The hand is invalid.");
       }
     }
+    index = skipSeparator(sfen, index, length);
 
     // Set move counter
-    try {
-      int nextMoveNumber = Integer.parseInt(sfenElements[3]);
-      position.moveCounter = nextMoveNumber - 1;
-    } catch (NumberFormatException e) {
+    int nextMoveNumber = 0;
+    if (index == length) {
       throw new IllegalArgumentException("Invalid SFEN: The next move number is invalid.");
     }
+    for (; index < length && sfen.charAt(index) != ' '; index++) {
+      char c = sfen.charAt(index);
+      if (c < '0' || c > '9' || nextMoveNumber > (Integer.MAX_VALUE - 9) / 10) {
+        throw new IllegalArgumentException("Invalid SFEN: The next move number is invalid.");
+      }
+      nextMoveNumber = nextMoveNumber * 10 + (c - '0');
+    }
+    if (index != length) {
+      throw new IllegalArgumentException("Invalid SFEN: The number of elements is not enough.");
+    }
+    moveCounter = nextMoveNumber - 1;
 
-    position.updateCheckerBitboard();
-    position.zobristHistory[position.zobristIndex++] = position.getZobristHash();
+    updateCheckerBitboard();
+    zobristHistory[ply] = getZobristHash();
+  }
 
-    return position;
+  // Skips the space separating the elements of SFEN, and returns the index of the next element.
+  private static int skipSeparator(final CharSequence sfen, final int index, final int length) {
+    if (index + 1 >= length || sfen.charAt(index) != ' ') {
+      throw new IllegalArgumentException("Invalid SFEN: The number of elements is not enough.");
+    }
+    return index + 1;
   }
 
   Hand getHand(final Color color) {
@@ -227,12 +429,12 @@ public class PositionBitboardImpl implements Position {
 
   @Override
   public Move getLastMove() {
-    return lastMoves[moveCounter];
+    return lastMoves[ply];
   }
 
   @Override
   public Piece getLastCapturedPiece() {
-    return capturedMap.getOrDefault(moveCounter, NO_PIECE);
+    return capturedPieces[ply];
   }
 
   @Override
@@ -251,32 +453,123 @@ public class PositionBitboardImpl implements Position {
 
   @Override
   public void setPiece(final Square square, final Piece piece) {
+    sfenCache = null;
     unsetPiece(square);
-    board[square.ordinal()] = piece;
     if (piece != NO_PIECE) {
-      occupiedBB.or(getSquareBitboard(square));
-      pieceOccupiedBB[NO_PIECE.ordinal()].xor(getSquareBitboard(square));
-      pieceOccupiedBB[piece.ordinal()].or(getSquareBitboard(square));
-      colorOccupiedBB[piece.getColor().ordinal()].or(getSquareBitboard(square));
+      putPiece(square, piece);
       zobristKey ^= Zobrist.getBoardKey(piece, square);
     }
   }
 
   @Override
   public void unsetPiece(final Square square) {
+    sfenCache = null;
     Piece piece = board[square.ordinal()];
     if (piece != NO_PIECE) {
-      board[square.ordinal()] = NO_PIECE;
-      occupiedBB.xor(getSquareBitboard(square));
-      pieceOccupiedBB[NO_PIECE.ordinal()].or(getSquareBitboard(square));
-      pieceOccupiedBB[piece.ordinal()].xor(getSquareBitboard(square));
-      colorOccupiedBB[piece.getColor().ordinal()].xor(getSquareBitboard(square));
+      removePiece(square);
       zobristKey ^= Zobrist.getBoardKey(piece, square);
     }
   }
 
+  // puts a piece on the empty square without updating the zobrist key
+  private void putPiece(final Square square, final Piece piece) {
+    if (attackCounts != null) {
+      // the sliders passing through the square are blocked by the piece
+      updateSliderAttackCounts(square, -1);
+    }
+    board[square.ordinal()] = piece;
+    occupiedBB.or(getSquareBitboard(square));
+    pieceOccupiedBB[NO_PIECE.ordinal()].xor(getSquareBitboard(square));
+    pieceOccupiedBB[piece.ordinal()].or(getSquareBitboard(square));
+    colorOccupiedBB[piece.getColor().ordinal()].or(getSquareBitboard(square));
+    if (attackCounts != null) {
+      updateAttackCounts(piece, square, 1);
+      addSliderAttackCounts(1);
+    }
+  }
+
+  // removes the piece from the occupied square without updating the zobrist key
+  private void removePiece(final Square square) {
+    Piece piece = board[square.ordinal()];
+    if (attackCounts != null) {
+      updateAttackCounts(piece, square, -1);
+      // the sliders blocked by the piece pass through the square
+      updateSliderAttackCounts(square, -1);
+    }
+    board[square.ordinal()] = NO_PIECE;
+    occupiedBB.xor(getSquareBitboard(square));
+    pieceOccupiedBB[NO_PIECE.ordinal()].or(getSquareBitboard(square));
+    pieceOccupiedBB[piece.ordinal()].xor(getSquareBitboard(square));
+    colorOccupiedBB[piece.getColor().ordinal()].xor(getSquareBitboard(square));
+    if (attackCounts != null) {
+      addSliderAttackCounts(1);
+    }
+  }
+
+  // Collects the sliders of both colors effective for the square into the sliders bitboard, and
+  // updates the attack counts of their effects. Their effects change when the square is changed.
+  private void updateSliderAttackCounts(final Square square, final int delta) {
+    Bitboard bishops = getBishopSlidingEffectBitboard(square, occupiedBB);
+    Bitboard rooks = getRookSlidingEffectBitboard(square, occupiedBB);
+    slidersBB.clear();
+    for (Color color : Color.getColors()) {
+      slidersBB
+          .orAnd(bishops, getPieceBitboard(color, BISHOP))
+          .orAnd(bishops, getPieceBitboard(color, HORSE))
+          .orAnd(rooks, getPieceBitboard(color, ROOK))
+          .orAnd(rooks, getPieceBitboard(color, DRAGON))
+          .orAnd(getLanceSlidingEffectBitboard(color.getOpponent(), square, occupiedBB),
+              getPieceBitboard(color, LANCE));
+    }
+    addSliderAttackCounts(delta);
+  }
+
+  // Updates the attack counts of the effects of the sliders in the sliders bitboard.
+  private void addSliderAttackCounts(final int delta) {
+    piecesBB.set(slidersBB);
+    while (piecesBB.hasNext()) {
+      Square from = piecesBB.getNextSquare();
+      updateAttackCounts(board[from.ordinal()], from, delta);
+    }
+  }
+
+  // Updates the attack counts of the effects of the piece on the square.
+  private void updateAttackCounts(final Piece piece, final Square square, final int delta) {
+    Color color = piece.getColor();
+    switch (piece.getPieceType()) {
+      case PAWN -> updateAttackCounts(color, getPawnEffectBitboard(color, square), delta);
+      case LANCE -> updateAttackCounts(color,
+          getLanceSlidingEffectBitboard(color, square, occupiedBB), delta);
+      case KNIGHT -> updateAttackCounts(color, getKnightEffectBitboard(color, square), delta);
+      case SILVER -> updateAttackCounts(color, getSilverEffectBitboard(color, square), delta);
+      case BISHOP -> updateAttackCounts(color,
+          getBishopSlidingEffectBitboard(square, occupiedBB), delta);
+      case ROOK -> updateAttackCounts(color,
+          getRookSlidingEffectBitboard(square, occupiedBB), delta);
+      case KING -> updateAttackCounts(color, getKingEffectBitboard(square), delta);
+      case HORSE -> {
+        updateAttackCounts(color, getBishopSlidingEffectBitboard(square, occupiedBB), delta);
+        updateAttackCounts(color, getRookStepEffectBitboard(square), delta);
+      }
+      case DRAGON -> {
+        updateAttackCounts(color, getRookSlidingEffectBitboard(square, occupiedBB), delta);
+        updateAttackCounts(color, getBishopStepEffectBitboard(square), delta);
+      }
+      default -> updateAttackCounts(color, getGoldEffectBitboard(color, square), delta);
+    }
+  }
+
+  private void updateAttackCounts(final Color color, final Bitboard effects, final int delta) {
+    int[] counts = attackCounts[color.ordinal()];
+    effectsBB.set(effects);
+    while (effectsBB.hasNext()) {
+      counts[effectsBB.getNextSquare().ordinal()] += delta;
+    }
+  }
+
   @Override
   public void addPieceToHand(final Color color, final PieceType pr) {
+    sfenCache = null;
     zobristKey ^= handsHash();
     hands[color.ordinal()].add(pr);
     zobristKey ^= handsHash();
@@ -288,6 +581,7 @@ public class PositionBitboardImpl implements Position {
 
   @Override
   public void subtractPieceFromHand(final Color color, final PieceType pr) {
+    sfenCache = null;
     zobristKey ^= handsHash();
     hands[color.ordinal()].subtract(pr);
     zobristKey ^= handsHash();
@@ -298,6 +592,11 @@ public class PositionBitboardImpl implements Position {
     return hands[color.ordinal()].count(pr);
   }
 
+  @Override
+  public int getHandValue(final Color color) {
+    return hands[color.ordinal()].toInt();
+  }
+
   private void changeSide() {
     sideToMove = sideToMove.getOpponent();
     zobristKey ^= Zobrist.sideKey;
@@ -305,8 +604,13 @@ public class PositionBitboardImpl implements Position {
 
   @Override
   public void doMove(final Move move) {
+    // the position may have been edited by setPiece() etc. since the key was pushed
+    zobristHistory[ply] = zobristKey;
+    sfenCache = null;
     moveCounter++;
-    lastMoves[moveCounter] = move;
+    ply++;
+    lastMoves[ply] = move;
+    capturedPieces[ply] = NO_PIECE;
 
     if (move == Move.MOVE_NULL) {
       // do nothing
@@ -324,7 +628,7 @@ public class PositionBitboardImpl implements Position {
       // If a piece exists on the destination square, add the piece to the hand
       Piece captured = board[toSquare.ordinal()];
       if (captured != NO_PIECE) {
-        capturedMap.put(moveCounter, captured);
+        capturedPieces[ply] = captured;
         addPieceToHand(sideToMove, captured.getRawType());
       }
 
@@ -343,58 +647,70 @@ public class PositionBitboardImpl implements Position {
 
     changeSide();
     updateCheckerBitboard();
-    zobristHistory[zobristIndex++] = getZobristHash();
+    zobristHistory[ply] = getZobristHash();
   }
 
   @Override
   public Move undoMove() {
-    if (moveCounter == 0) {
+    if (ply == 0) {
       // do nothing
       return Move.MOVE_NONE;
     }
 
-    Move move = lastMoves[moveCounter];
+    Move move = lastMoves[ply];
+    Color us = sideToMove.getOpponent(); // the side that played the move
+    sfenCache = null;
 
+    // The zobrist key and the checker bitboard are restored from the stack at the end, so the
+    // pieces and the hands are reverted without updating them.
     if (move == Move.MOVE_NULL) {
       // do nothing
     } else if (move.isDrop()) {
-      Square toSquare = move.getToSquare();
-      unsetPiece(toSquare);
-      PieceType pt = move.getPieceType();
-      addPieceToHand(sideToMove.getOpponent(), pt);
+      removePiece(move.getToSquare());
+      hands[us.ordinal()].add(move.getPieceType());
     } else {
       Square fromSquare = move.getFromSquare();
       Square toSquare = move.getToSquare();
 
       // move the piece from the destination square to the origin square
       Piece toPiece = board[toSquare.ordinal()];
+      removePiece(toSquare);
       if (move.isPromote()) {
         toPiece = toPiece.getReversePromoted();
       }
-      setPiece(fromSquare, toPiece);
-
-      // reset the destination square
-      Piece captured = capturedMap.get(moveCounter);
-      if (captured != null) {
-        subtractPieceFromHand(sideToMove.getOpponent(), captured.getRawType());
-        setPiece(toSquare, captured);
-        capturedMap.remove(moveCounter);
-      } else {
-        unsetPiece(toSquare);
+      putPiece(fromSquare, toPiece);
+
+      // put back the captured piece on the destination square
+      Piece captured = capturedPieces[ply];
+      if (captured != NO_PIECE) {
+        hands[us.ordinal()].subtract(captured.getRawType());
+        putPiece(toSquare, captured);
       }
 
       if (toPiece.getPieceType() == KING) {
-        kingSquare[sideToMove.getOpponent().ordinal()] = fromSquare;
+        kingSquare[us.ordinal()] = fromSquare;
       }
     }
 
-    changeSide();
-    updateCheckerBitboard();
-    zobristHistory[zobristIndex--] = 0;
+    sideToMove = us;
+    ply--;
     moveCounter--;
+    zobristKey = zobristHistory[ply];
+    checkerBB = checkerHistory[ply];
     return move;
   }
 
+  @Override
+  public Position copy() {
+    return new PositionBitboardImpl(this);
+  }
+
+  @Override
+  public PositionSnapshot snapshot() {
+    return new PositionSnapshot(board, hands[BLACK.ordinal()], hands[WHITE.ordinal()], sideToMove,
+        moveCounter, getZobristHash());
+  }
+
   @Override
   public List<Move> getLegalMoves() {
     return BitboardMoveGenerator.getLegalMoves(this);
@@ -405,45 +721,82 @@ public class PositionBitboardImpl implements Position {
     return BitboardMoveGenerator.getPseudoLegalMoves(this);
   }
 
-  // Returns bitboard of the given colored attacker, effective for the given square.
-  Bitboard getAttackersTo(Color attacker, Square square) {
-    if (square == null) return null;
-    Bitboard occ = getOccupiedBitboard();
-    Color attacked = attacker.getOpponent();
-
-    // Bitboard integrating GOLD group
-    Bitboard GOLDS = or(getPieceBitboard(attacker, GOLD), getPieceBitboard(attacker, PRO_PAWN))
-        .or(getPieceBitboard(attacker, PRO_LANCE))
-        .or(getPieceBitboard(attacker, PRO_KNIGHT))
-        .or(getPieceBitboard(attacker, PRO_SILVER));
-
-    // Bitboard integrating HORSE, DRAGON, KING (HDK)
-    Bitboard HDK = or(getPieceBitboard(attacker, HORSE), getPieceBitboard(attacker, DRAGON))
-        .or(getPieceBitboard(attacker, KING));
+  @Override
+  public int generateLegalMoves(final int[] moves) {
+    return BitboardMoveGenerator.generateLegalMoves(this, moves);
+  }
 
-    // Bitboard integrating SILVER and HDK
-    Bitboard SILVER_HDK = or(getPieceBitboard(attacker, SILVER), HDK);
+  @Override
+  public int generateCheckMoves(final int[] moves) {
+    return BitboardMoveGenerator.generateCheckMoves(this, moves);
+  }
 
-    // Bitboard integrating GOLD group and HDK
-    Bitboard GOLDS_HDK = or(GOLDS, HDK);
+  @Override
+  public int generatePseudoLegalMoves(final int[] moves) {
+    return BitboardMoveGenerator.generatePseudoLegalMoves(this, moves);
+  }
 
-    // Bitboard integrating BISHOP and HORSE
-    Bitboard BISHOP_HORSE = or(getPieceBitboard(attacker, BISHOP), getPieceBitboard(attacker, HORSE));
+  // Returns bitboard of the given colored attacker, effective for the given square.
+  // It creates a new bitboard, so hot paths must pass a scratch bitboard to the overload below.
+  Bitboard getAttackersTo(Color attacker, Square square) {
+    return getAttackersTo(attacker, square, getOccupiedBitboard(), new Bitboard());
+  }
 
-    // Bitboard integrating ROOK and DRAGON
-    Bitboard ROOK_DRAGON = or(getPieceBitboard(attacker, ROOK), getPieceBitboard(attacker, DRAGON));
+  // Stores bitboard of the given colored attacker, effective for the given square, supposing that
+  // the given bitboard is occupied, into the result bitboard without creating any bitboard.
+  // Returns the result bitboard.
+  Bitboard getAttackersTo(Color attacker, Square square, Bitboard occ, Bitboard result) {
+    result.clear();
+    if (square == null) return result;
+    Color attacked = attacker.getOpponent();
 
     // Suppose the attacker is black and the attacked is white. If a white piece exists
     // on the square, and a black piece exists on the effect of the white piece,
     // it means that the black piece has an effect on the square. The reverse is also true.
+    // HORSE and DRAGON are effective for all the neighbors together with their sliding effects.
+
+    Bitboard goldEffect = getGoldEffectBitboard(attacked, square);
+    Bitboard kingEffect = getKingEffectBitboard(square);
+    Bitboard bishopEffect = getBishopSlidingEffectBitboard(square, occ);
+    Bitboard rookEffect = getRookSlidingEffectBitboard(square, occ);
+    return result
+        .orAnd(getPawnEffectBitboard(attacked, square), getPieceBitboard(attacker, PAWN))
+        .orAnd(getKnightEffectBitboard(attacked, square), getPieceBitboard(attacker, KNIGHT))
+        .orAnd(getSilverEffectBitboard(attacked, square), getPieceBitboard(attacker, SILVER))
+        .orAnd(goldEffect, getPieceBitboard(attacker, GOLD))
+        .orAnd(goldEffect, getPieceBitboard(attacker, PRO_PAWN))
+        .orAnd(goldEffect, getPieceBitboard(attacker, PRO_LANCE))
+        .orAnd(goldEffect, getPieceBitboard(attacker, PRO_KNIGHT))
+        .orAnd(goldEffect, getPieceBitboard(attacker, PRO_SILVER))
+        .orAnd(kingEffect, getPieceBitboard(attacker, KING))
+        .orAnd(kingEffect, getPieceBitboard(attacker, HORSE))
+        .orAnd(kingEffect, getPieceBitboard(attacker, DRAGON))
+        .orAnd(bishopEffect, getPieceBitboard(attacker, BISHOP))
+        .orAnd(bishopEffect, getPieceBitboard(attacker, HORSE))
+        .orAnd(rookEffect, getPieceBitboard(attacker, ROOK))
+        .orAnd(rookEffect, getPieceBitboard(attacker, DRAGON))
+        .orAnd(getLanceSlidingEffectBitboard(attacked, square, occ), getPieceBitboard(attacker, LANCE));
+  }
 
-    return and(getPawnEffectBitboard(attacked, square), getPieceBitboard(attacker, PAWN))
-        .or(and(getKnightEffectBitboard(attacked, square), getPieceBitboard(attacker, KNIGHT)))
-        .or(and(getSilverEffectBitboard(attacked, square), SILVER_HDK))
-        .or(and(getGoldEffectBitboard(attacked, square), GOLDS_HDK))
-        .or(and(getBishopSlidingEffectBitboard(square, occ), BISHOP_HORSE))
-        .or(and(getRookSlidingEffectBitboard(square, occ), ROOK_DRAGON))
-        .or(and(newLanceSlidingEffectBitboard(attacked, square, occ), getPieceBitboard(attacker, LANCE)));
+  // Is the given square attacked by the given colored attacker, supposing that the given bitboard
+  // is occupied? It doesn't create any bitboard.
+  boolean isAttacked(Color attacker, Square square, Bitboard occ) {
+    return !getAttackersTo(attacker, square, occ, attackersBB).isZero();
+  }
+
+  // Is the given square attacked by the given colored attacker if the king of the other side is
+  // removed? It is used to check whether the king can move to the square, because the king itself
+  // must not block sliding effects. It doesn't create any bitboard.
+  boolean isAttackedWithoutKing(Color attacker, Square square) {
+    if (attackCounts != null && attackCounts[attacker.ordinal()][square.ordinal()] > 0) {
+      return true;
+    }
+    Square ksq = kingSquare[attacker.getOpponent().ordinal()];
+    kinglessOccupiedBB.set(occupiedBB);
+    if (ksq != null) {
+      kinglessOccupiedBB.xor(getSquareBitboard(ksq));
+    }
+    return isAttacked(attacker, square, kinglessOccupiedBB);
   }
 
   private Bitboard getPieceBitboard(final Color color, final PieceType pt) {
@@ -458,8 +811,18 @@ public class PositionBitboardImpl implements Position {
     return pieceOccupiedBB[NO_PIECE.ordinal()];
   }
 
+  // Updates the checker bitboard, reusing the bitboard of the current ply in the checker history.
   private void updateCheckerBitboard() {
-    checkerBB = getAttackersTo(sideToMove.getOpponent(), kingSquare[sideToMove.ordinal()]);
+    if (checkerHistory[ply] == null) {
+      checkerHistory[ply] = new Bitboard();
+    }
+    Square ksq = kingSquare[sideToMove.ordinal()];
+    if (attackCounts != null && !isAttacked(sideToMove.getOpponent(), ksq)) {
+      // no need to look for the checkers
+      checkerBB = checkerHistory[ply].clear();
+    } else {
+      checkerBB = getAttackersTo(sideToMove.getOpponent(), ksq, occupiedBB, checkerHistory[ply]);
+    }
   }
 
   @Override
@@ -469,8 +832,126 @@ public class PositionBitboardImpl implements Position {
 
   // Is the king of the given color attacked?
   boolean isKingAttacked(final Color color) {
-    Bitboard bb = getAttackersTo(color.getOpponent(), kingSquare[color.ordinal()]);
-    return !bb.isZero();
+    return isAttacked(color.getOpponent(), kingSquare[color.ordinal()]);
+  }
+
+  @Override
+  public boolean isAttacked(final Color attacker, final Square square) {
+    if (attackCounts != null) {
+      return square != null && attackCounts[attacker.ordinal()][square.ordinal()] > 0;
+    }
+    return isAttacked(attacker, square, occupiedBB);
+  }
+
+  @Override
+  public int getAttackCount(final Color attacker, final Square square) {
+    if (attackCounts != null) {
+      return attackCounts[attacker.ordinal()][square.ordinal()];
+    }
+    return getAttackersTo(attacker, square, occupiedBB, attackersBB).popCount();
+  }
+
+  @Override
+  public void setAttackMapEnabled(final boolean enabled) {
+    if (!enabled) {
+      attackCounts = null;
+    } else if (attackCounts == null) {
+      attackCounts = new int[COLORS_LENGTH][SQUARES_LENGTH];
+      for (Square square : Square.getSquares()) {
+        Piece piece = board[square.ordinal()];
+        if (piece != NO_PIECE) {
+          updateAttackCounts(piece, square, 1);
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean isAttackMapEnabled() {
+    return attackCounts != null;
+  }
+
+  Bitboard getCheckerBitboard() {
+    return checkerBB;
+  }
+
+  // Stores bitboard of the pieces of the given color pinned against the king of the color into the
+  // result bitboard, and returns the result bitboard.
+  // A pinned piece can only move along the line between the king and the pinning piece.
+  Bitboard getPinnedBitboard(final Color color, final Bitboard result) {
+    return getBlockerBitboard(color, color, result);
+  }
+
+  // Stores bitboard of the pieces of the blocker color which are the only pieces between the king
+  // of the given color and an enemy slider into the result bitboard without creating any bitboard,
+  // and returns the result bitboard. They are the pinned pieces if the blocker is the color of the
+  // king, or the pieces discovering a check when they move off the line otherwise.
+  Bitboard getBlockerBitboard(final Color king, final Color blocker, final Bitboard result) {
+    result.clear();
+    Square ksq = kingSquare[king.ordinal()];
+    if (ksq == null) {
+      return result;
+    }
+    Color enemy = king.getOpponent();
+
+    // enemy sliders effective for the king if there is no pieces between them
+    Bitboard rookEffect = getRookSlidingEffectBitboard(ksq, ZERO_BB);
+    Bitboard bishopEffect = getBishopSlidingEffectBitboard(ksq, ZERO_BB);
+    Bitboard snipers = snipersBB.clear()
+        .orAnd(rookEffect, getPieceBitboard(enemy, ROOK))
+        .orAnd(rookEffect, getPieceBitboard(enemy, DRAGON))
+        .orAnd(bishopEffect, getPieceBitboard(enemy, BISHOP))
+        .orAnd(bishopEffect, getPieceBitboard(enemy, HORSE))
+        .orAnd(getLanceSlidingEffectBitboard(king, ksq, ZERO_BB), getPieceBitboard(enemy, LANCE));
+
+    while (snipers.hasNext()) {
+      Square sniper = snipers.getNextSquare();
+      Bitboard between = betweenBB.set(getBetweenBitboard(ksq, sniper)).and(occupiedBB);
+      if (between.popCount() == 1 && between.intersects(getColorBitboard(blocker))) {
+        result.or(between);
+      }
+    }
+    return result;
+  }
+
+  // Is a pawn dropped on the given square checkmate? (It is called Uchifuzume in Japanese.)
+  // The pawn on the square must check the enemy king.
+  boolean isPawnDropMate(final Square to) {
+    Color us = sideToMove;
+    Color them = us.getOpponent();
+    Square ksq = kingSquare[them.ordinal()];
+
+    // Can the pawn be captured by a piece other than the king? The piece must not be pinned
+    // unless it moves along the line between the king and the pinning piece.
+    Bitboard defenders = getAttackersTo(them, to, occupiedBB, defendersBB)
+        .andNot(getPieceBitboard(them, KING));
+    if (!defenders.isZero()) {
+      Bitboard pinned = getPinnedBitboard(them, enemyPinnedBB);
+      while (defenders.hasNext()) {
+        Square defender = defenders.getNextSquare();
+        if (!pinned.contains(defender) || getLineBitboard(ksq, defender).contains(to)) {
+          return false;
+        }
+      }
+    }
+
+    // Can the king escape or capture the pawn? The pawn is supposed to be on the square, and the
+    // king is removed not to block sliding effects.
+    Bitboard occ = kinglessOccupiedBB.set(occupiedBB).or(getSquareBitboard(to))
+        .xor(getSquareBitboard(ksq));
+    Bitboard escapes = escapesBB.set(getKingEffectBitboard(ksq)).andNot(getColorBitboard(them));
+    while (escapes.hasNext()) {
+      if (!isAttacked(us, escapes.getNextSquare(), occ)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Can a move from the current position result in a fourfold repetition?
+  // The same position needs at least 12 plies to appear four times.
+  boolean mayRepeat() {
+    return ply >= 11;
   }
 
   Square getKingSquare(final Color color) {
@@ -496,11 +977,16 @@ public class PositionBitboardImpl implements Position {
     return zobristKey;
   }
 
+  @Override
+  public long getBoardHash() {
+    return zobristKey ^ handsHash();
+  }
+
   @Override
   public boolean isRepetition() {
     int count = 1;
     // the current position and the previous position don't need to be checked
-    for (int i = zobristIndex - 3; i >= 0; i--) {
+    for (int i = ply - 2; i >= 0; i--) {
       // Simply assume the same position if the zobrist hashes are the same.
       // TODO: check a fourfold repetition strictly
       if (zobristHistory[i] == getZobristHash()) {
@@ -515,17 +1001,27 @@ public class PositionBitboardImpl implements Position {
 
   @Override
   public boolean isMated() {
-    return BitboardMoveGenerator.getLegalMoves(this).size() == 0;
+    return BitboardMoveGenerator.generateLegalMoves(this, new int[MAX_MOVES]) == 0;
   }
 
   @Override
   public String getSfen() {
+    if (sfenCache == null) {
+      int length = writeSfen(sfenBuffer, 0);
+      sfenCache = new String(sfenBuffer, 0, length, StandardCharsets.US_ASCII);
+    }
+    return sfenCache;
+  }
+
+  @Override
+  public int writeSfen(final byte[] buffer, final int offset) {
+    int index = offset;
+
     // board
-    StringBuilder sb = new StringBuilder();
     int spaces = 0;
     for (int i = 0; i < RANKS_LENGTH; i++) {
       if (i > 0) {
-        sb.append("/");
+        buffer[index++] = '/';
       }
       for (int j = FILES_LENGTH - 1; j >= 0; j--) {
         Piece piece = getPiece(j, i);
@@ -533,36 +1029,66 @@ public class PositionBitboardImpl implements Position {
           spaces++;
         } else {
           if (spaces > 0) {
-            sb.append(spaces);
+            buffer[index++] = (byte) ('0' + spaces);
             spaces = 0;
           }
-          sb.append(piece);
+          String usi = piece.toString();
+          for (int k = 0; k < usi.length(); k++) {
+            buffer[index++] = (byte) usi.charAt(k);
+          }
         }
       }
       if (spaces > 0) {
-        sb.append(spaces);
+        buffer[index++] = (byte) ('0' + spaces);
         spaces = 0;
       }
     }
 
     // side
-    sb.append(" ");
-    sb.append(sideToMove);
+    buffer[index++] = ' ';
+    buffer[index++] = (byte) (sideToMove == BLACK ? 'b' : 'w');
 
     // hands
-    sb.append(" ");
+    buffer[index++] = ' ';
     if (hands[0].isZero() && hands[1].isZero()) {
-      sb.append("-");
+      buffer[index++] = '-';
     } else {
-      sb.append(hands[0]);
-      sb.append(hands[1].toString().toLowerCase());
+      index = hands[0].writeUSI(buffer, index, false);
+      index = hands[1].writeUSI(buffer, index, true);
     }
 
     // the next move counter
-    sb.append(" ");
-    sb.append(moveCounter + 1);
+    buffer[index++] = ' ';
+    int number = moveCounter + 1;
+    int digits = 1;
+    for (int n = number / 10; n > 0; n /= 10) {
+      digits++;
+    }
+    for (int k = digits - 1; k >= 0; k--) {
+      buffer[index + k] = (byte) ('0' + number % 10);
+      number /= 10;
+    }
+    index += digits;
 
-    return sb.toString();
+    return index - offset;
+  }
+
+  @Override
+  public void writeSfen(final ByteBuffer buffer) {
+    int length = writeSfen(sfenBuffer, 0);
+    buffer.put(sfenBuffer, 0, length);
+  }
+
+  @Override
+  public void writeSfen(final Appendable out) throws IOException {
+    if (sfenCache != null) {
+      out.append(sfenCache);
+      return;
+    }
+    int length = writeSfen(sfenBuffer, 0);
+    for (int i = 0; i < length; i++) {
+      out.append((char) sfenBuffer[i]);
+    }
   }
 
   @Override
@@ -0,0 +1,268 @@
+package com.github.hayanige.shogilib.kifu;
+
+import com.github.hayanige.shogilib.PackedSfen;
+import com.github.hayanige.shogilib.Position;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A loader of a corpus of game records in a directory.
+ * <p>
+ * The files are walked lazily and passed to the worker threads through a bounded queue, and each
+ * worker parses one file at a time with its own parsers, so the memory usage doesn't depend on
+ * the size of the corpus. The following files are loaded.
+ * <ul>
+ *   <li>{@code *.csa}: CSA format in UTF-8 (or ASCII)</li>
+ *   <li>{@code *.kif}: KIF format in Shift_JIS</li>
+ *   <li>{@code *.kifu}: KIF format in UTF-8</li>
+ * </ul>
+ */
+public final class CorpusLoader {
+
+  private static final Charset SHIFT_JIS = Charset.forName("windows-31j");
+  private static final int QUEUE_SIZE_PER_THREAD = 4;
+  private static final long POLL_MILLIS = 100;
+
+  private final int threads;
+  private final BiConsumer<Path, Exception> errorHandler;
+
+  /**
+   * Creates a loader using all the available processors, which stops at the first invalid file.
+   */
+  public CorpusLoader() {
+    this(Runtime.getRuntime().availableProcessors(), null);
+  }
+
+  /**
+   * Creates a loader.
+   *
+   * @param threads the number of the worker threads
+   * @param errorHandler  the handler of the files which can't be read or parsed, called
+   *                      concurrently by the workers. If it is null, the loading stops at the
+   *                      first invalid file and the error is thrown.
+   */
+  public CorpusLoader(final int threads, final BiConsumer<Path, Exception> errorHandler) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+    }
+    this.threads = threads;
+    this.errorHandler = errorHandler;
+  }
+
+  /**
+   * Is the file a game record supported by the loader?
+   *
+   * @param file  the file
+   * @return  true if the file is supported
+   */
+  public static boolean isSupported(final Path file) {
+    return getCharset(file) != null;
+  }
+
+  /**
+   * Loads all the games in the directory and its subdirectories.
+   *
+   * @param directory the directory
+   * @param consumer  the consumer of the games, called concurrently by the workers in no
+   *                  particular order
+   * @return  the number of the loaded games
+   * @throws IOException if the directory can't be walked, or a file can't be read without the
+   *                     error handler
+   * @throws IllegalArgumentException if a file is invalid without the error handler
+   * @throws Error  if a worker throws it, e.g. {@link OutOfMemoryError}
+   */
+  public long load(final Path directory, final Consumer<GameRecord> consumer) throws IOException {
+    Job job = new Job(consumer);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(job::work);
+    }
+    try (Stream<Path> files = Files.walk(directory)) {
+      Iterator<Path> iterator = files.filter(Files::isRegularFile)
+          .filter(CorpusLoader::isSupported).iterator();
+      while (iterator.hasNext() && job.failure.get() == null) {
+        // The queue is offered with a timeout, since it is never drained if all the workers
+        // have died.
+        Path file = iterator.next();
+        while (job.failure.get() == null
+            && !job.queue.offer(file, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          // wait for the workers
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      job.failure.compareAndSet(null, new InterruptedIOException("Loading is interrupted."));
+    } catch (IOException | UncheckedIOException e) {
+      job.failure.compareAndSet(null, e);
+    } finally {
+      job.done = true;
+      executor.shutdown();
+      try {
+        while (!executor.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          // wait for the workers
+        }
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    Throwable failure = job.failure.get();
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure instanceof UncheckedIOException) {
+      throw ((UncheckedIOException) failure).getCause();
+    } else if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure != null) {
+      throw new IOException(failure);
+    }
+    return job.games.get();
+  }
+
+  /**
+   * Loads all the games in the directory and writes the packed SFENs of all the positions in the
+   * games, i.e. the initial position and the positions after each move. The positions of a game
+   * are written in a row, but the games are written in no particular order. The games which
+   * don't have all the 40 pieces, e.g. handicap games, are skipped.
+   *
+   * @param directory the directory
+   * @param out the output stream the packed SFENs are written to
+   * @return  the number of the written positions
+   * @throws IOException if the directory can't be walked, the output stream throws it, or a file
+   *                     can't be read without the error handler
+   * @throws IllegalArgumentException if a file is invalid without the error handler
+   * @see PackedSfen
+   */
+  public long writePackedSfens(final Path directory, final OutputStream out) throws IOException {
+    AtomicLong positions = new AtomicLong();
+    ThreadLocal<Position> workerPosition = ThreadLocal.withInitial(Position::createHiratePosition);
+    load(directory, record -> {
+      Position position = workerPosition.get();
+      position.setSfen(record.getInitialSfen());
+      if (!PackedSfen.isEncodable(position)) {
+        return;
+      }
+      byte[] packed = new byte[(record.getNumberOfMoves() + 1) * PackedSfen.BYTES];
+      int[] offset = new int[1];
+      record.replay(position, (p, move) -> {
+        PackedSfen.encode(p, packed, offset[0]);
+        offset[0] += PackedSfen.BYTES;
+      });
+      try {
+        synchronized (out) {
+          out.write(packed);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      positions.addAndGet(record.getNumberOfMoves() + 1);
+    });
+    return positions.get();
+  }
+
+  private static Charset getCharset(final Path file) {
+    String name = file.getFileName().toString().toLowerCase();
+    if (name.endsWith(".csa") || name.endsWith(".kifu")) {
+      return StandardCharsets.UTF_8;
+    } else if (name.endsWith(".kif")) {
+      return SHIFT_JIS;
+    }
+    return null;
+  }
+
+  // The state of a loading shared by the producer and the workers
+  private final class Job {
+
+    private final Consumer<GameRecord> consumer;
+    private final BlockingQueue<Path> queue = new ArrayBlockingQueue<>(
+        threads * QUEUE_SIZE_PER_THREAD);
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean done;
+
+    Job(final Consumer<GameRecord> consumer) {
+      this.consumer = consumer;
+    }
+
+    void work() {
+      KifuParser csaParser = new CsaParser();
+      KifuParser kifParser = new KifParser();
+      try {
+        while (true) {
+          Path file = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if (file == null) {
+            if (done && queue.isEmpty()) {
+              return;
+            }
+          } else if (failure.get() == null) {
+            // the files are still taken after a failure so that the producer is not blocked
+            String name = file.getFileName().toString().toLowerCase();
+            try {
+              loadFile(file, name.endsWith(".csa") ? csaParser : kifParser);
+            } catch (RuntimeException e) {
+              // thrown by the consumer
+              failure.compareAndSet(null, e);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        failure.compareAndSet(null, new InterruptedIOException("Loading is interrupted."));
+      } catch (Error e) {
+        // e.g. OutOfMemoryError. The worker dies, and the producer stops at the failure.
+        failure.compareAndSet(null, e);
+      }
+    }
+
+    private void loadFile(final Path file, final KifuParser parser) {
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(Files.newInputStream(file), getCharset(file)))) {
+        while (true) {
+          GameRecord record;
+          try {
+            record = parser.parse(reader);
+          } catch (IllegalArgumentException e) {
+            handleError(file, new IllegalArgumentException(file + ": " + e.getMessage(), e));
+            return;
+          }
+          if (record == null) {
+            return;
+          }
+          consumer.accept(record);
+          games.incrementAndGet();
+        }
+      } catch (IOException e) {
+        handleError(file, e);
+      }
+    }
+
+    private void handleError(final Path file, final Exception e) {
+      if (errorHandler != null) {
+        errorHandler.accept(file, e);
+      } else {
+        failure.compareAndSet(null, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package com.github.hayanige.shogilib.kifu;
+
+import com.github.hayanige.shogilib.Color;
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Piece;
+import com.github.hayanige.shogilib.PieceType;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.Rank;
+import com.github.hayanige.shogilib.Square;
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * A parser of the CSA standard file format, e.g. {@code +7776FU}.
+ * <p>
+ * It reads the initial position ({@code PI}, {@code P1}-{@code P9} and {@code P+}/{@code P-}
+ * lines) and the moves, and ignores the other information such as the player names and the
+ * time. Games separated by a {@code /} line in a file are read one by one.
+ * <p>
+ * The parser reuses one position to validate the moves, so it is not thread-safe. Use one parser
+ * per thread.
+ *
+ * @see <a href="http://www2.computer-shogi.org/protocol/record_v22.html">CSA standard file format</a>
+ */
+public final class CsaParser implements KifuParser {
+
+  private static final PieceType[] PIECE_TYPES = new PieceType[] {
+      PieceType.PAWN, PieceType.LANCE, PieceType.KNIGHT, PieceType.SILVER, PieceType.GOLD,
+      PieceType.BISHOP, PieceType.ROOK, PieceType.KING, PieceType.PRO_PAWN, PieceType.PRO_LANCE,
+      PieceType.PRO_KNIGHT, PieceType.PRO_SILVER, PieceType.HORSE, PieceType.DRAGON
+  };
+  private static final String[] PIECE_NAMES = new String[] {
+      "FU", "KY", "KE", "GI", "KI", "KA", "HI", "OU", "TO", "NY", "NK", "NG", "UM", "RY"
+  };
+
+  private final RecordBuilder builder = new RecordBuilder("CSA");
+
+  @Override
+  public GameRecord parse(final BufferedReader reader) throws IOException {
+    builder.clear();
+    int lineNumber = 0;
+    boolean empty = true;
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      builder.setLineNumber(++lineNumber);
+      if (line.startsWith("/")) {
+        if (empty) {
+          continue;
+        }
+        break;
+      }
+      if (line.isEmpty() || line.charAt(0) == '\'') {
+        continue;
+      }
+      empty = false;
+
+      // several statements can be written in a line separated by commas
+      for (int start = 0, end; start < line.length(); start = end + 1) {
+        end = line.indexOf(',', start);
+        if (end < 0) {
+          end = line.length();
+        }
+        parseStatement(line, start, end);
+      }
+    }
+    return empty ? null : builder.build();
+  }
+
+  private void parseStatement(final String line, final int start, final int end) {
+    char c = line.charAt(start);
+    switch (c) {
+      case 'V': // version
+      case 'N': // player names
+      case '$': // game information
+      case 'T': // time
+      case '%': // the end of the game
+        return;
+      case 'P':
+        parsePosition(line, start, end);
+        return;
+      case '+':
+      case '-':
+        Color color = c == '+' ? Color.BLACK : Color.WHITE;
+        if (end - start == 1) {
+          if (builder.isStarted()) {
+            throw builder.error("The side to move is given after the moves.");
+          }
+          builder.setSideToMove(color);
+          builder.start();
+        } else {
+          parseMove(color, line, start + 1, end);
+        }
+        return;
+      default:
+        throw builder.error("Unknown statement " + line.substring(start, end) + ".");
+    }
+  }
+
+  private void parsePosition(final String line, final int start, final int end) {
+    if (builder.isStarted()) {
+      throw builder.error("The position is given after the moves.");
+    }
+    if (end - start < 2) {
+      throw builder.error("The position is invalid.");
+    }
+    char c = line.charAt(start + 1);
+    if (c == 'I') {
+      // Hirate with the removed pieces, e.g. PI82HI22KA
+      builder.setSfen(Position.HIRATE_SFEN);
+      for (int index = start + 2; index < end; index += 4) {
+        Square square = parseSquare(line, index, end);
+        PieceType pt = parsePieceType(line, index + 2, end);
+        Piece piece = square == null ? Piece.NO_PIECE : builder.getPiece(square);
+        if (piece == Piece.NO_PIECE || piece.getPieceType() != pt) {
+          throw builder.error("The removed piece is invalid.");
+        }
+        builder.setPiece(square, Piece.NO_PIECE);
+      }
+    } else if (c >= '1' && c <= '9') {
+      // a rank from file 9 to file 1, e.g. P1-KY-KE-GI-KI-OU-KI-GI-KE-KY
+      int rank = c - '1';
+      for (int file = 8; file >= 0; file--) {
+        int index = start + 2 + (8 - file) * 3;
+        if (index + 3 > end) {
+          throw builder.error("The number of pieces is not enough.");
+        }
+        Square square = Square.valueOf(file * Rank.RANKS_LENGTH + rank);
+        char side = line.charAt(index);
+        if (side == ' ' && line.charAt(index + 1) == '*') {
+          builder.setPiece(square, Piece.NO_PIECE);
+        } else if (side == '+' || side == '-') {
+          Color color = side == '+' ? Color.BLACK : Color.WHITE;
+          builder.setPiece(square, Piece.valueOf(color, parsePieceType(line, index + 1, end)));
+        } else {
+          throw builder.error("The piece is invalid.");
+        }
+      }
+    } else if (c == '+' || c == '-') {
+      // pieces on the board or in the hand, e.g. P+00KI00FU, P-00AL
+      Color color = c == '+' ? Color.BLACK : Color.WHITE;
+      for (int index = start + 2; index < end; index += 4) {
+        if (index + 4 > end) {
+          throw builder.error("The piece is invalid.");
+        }
+        if (line.charAt(index) == '0' && line.charAt(index + 1) == '0') {
+          if (line.startsWith("AL", index + 2)) {
+            builder.addRestPiecesToHand(color);
+          } else {
+            builder.addPieceToHand(color, parsePieceType(line, index + 2, end));
+          }
+        } else {
+          Square square = parseSquare(line, index, end);
+          if (square == null) {
+            throw builder.error("The square is invalid.");
+          }
+          builder.setPiece(square, Piece.valueOf(color, parsePieceType(line, index + 2, end)));
+        }
+      }
+    } else {
+      throw builder.error("The position is invalid.");
+    }
+  }
+
+  // e.g. 7776FU (the piece after the move), 0055KA (a drop)
+  private void parseMove(final Color color, final String line, final int start, final int end) {
+    if (end - start != 6) {
+      throw builder.error("The move " + line.substring(start - 1, end) + " is invalid.");
+    }
+    if (!builder.isStarted()) {
+      // the side to move is omitted
+      builder.setSideToMove(color);
+      builder.start();
+    }
+    Position position = builder.getPosition();
+    if (position.getSideToMove() != color) {
+      throw builder.error("The side of the move " + line.substring(start - 1, end) + " is wrong.");
+    }
+    Square to = parseSquare(line, start + 2, end);
+    PieceType pt = parsePieceType(line, start + 4, end);
+    if (to == null) {
+      throw builder.error("The square is invalid.");
+    }
+    Move move;
+    if (line.charAt(start) == '0' && line.charAt(start + 1) == '0') {
+      if (pt == PieceType.KING || pt.isPromoted()) {
+        throw builder.error("The piece of the drop is invalid.");
+      }
+      move = Move.makeMoveDrop(pt, to);
+    } else {
+      Square from = parseSquare(line, start, end);
+      Piece piece = from == null ? Piece.NO_PIECE : position.getPiece(from);
+      if (piece == Piece.NO_PIECE) {
+        throw builder.error("No piece is at the origin of the move.");
+      }
+      if (piece.getPieceType() == pt) {
+        move = Move.makeMove(from, to);
+      } else if (!piece.isPromoted() && piece.getPromoted().getPieceType() == pt) {
+        move = Move.makeMovePromote(from, to);
+      } else {
+        throw builder.error("The piece of the move is wrong.");
+      }
+    }
+    builder.play(move);
+  }
+
+  private Square parseSquare(final String line, final int index, final int end) {
+    if (index + 2 > end) {
+      return null;
+    }
+    int file = line.charAt(index) - '1';
+    int rank = line.charAt(index + 1) - '1';
+    if (file < 0 || file > 8 || rank < 0 || rank > 8) {
+      return null;
+    }
+    return Square.valueOf(file * Rank.RANKS_LENGTH + rank);
+  }
+
+  private PieceType parsePieceType(final String line, final int index, final int end) {
+    if (index + 2 <= end) {
+      for (int i = 0; i < PIECE_NAMES.length; i++) {
+        if (line.startsWith(PIECE_NAMES[i], index)) {
+          return PIECE_TYPES[i];
+        }
+      }
+    }
+    throw builder.error("The piece is invalid.");
+  }
+}
@@ -0,0 +1,142 @@
+package com.github.hayanige.shogilib.kifu;
+
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.UsiRecordReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable game record: the initial position and the sequence of the played moves.
+ * The moves have been validated against the legal moves when the record was parsed.
+ * <p>
+ * The moves are held in their 16-bit representation, so a record is compact enough to keep a
+ * large number of games in memory.
+ */
+public final class GameRecord {
+
+  private final String initialSfen;
+  private final int[] moves;
+
+  GameRecord(final String initialSfen, final int[] moves) {
+    this.initialSfen = initialSfen;
+    this.moves = moves;
+  }
+
+  /**
+   * Returns SFEN of the initial position.
+   *
+   * @return  SFEN of the initial position
+   */
+  public String getInitialSfen() {
+    return initialSfen;
+  }
+
+  /**
+   * Returns the number of the played moves.
+   *
+   * @return  the number of the moves
+   */
+  public int getNumberOfMoves() {
+    return moves.length;
+  }
+
+  /**
+   * Returns the move played at the given index.
+   *
+   * @param index the index of the move starting from 0
+   * @return  the move
+   */
+  public Move getMove(final int index) {
+    return Move.valueOf(moves[index]);
+  }
+
+  /**
+   * Returns the list of the played moves.
+   *
+   * @return  a new list of the moves
+   */
+  public List<Move> getMoves() {
+    List<Move> list = new ArrayList<>(moves.length);
+    for (int move : moves) {
+      list.add(Move.valueOf(move));
+    }
+    return list;
+  }
+
+  /**
+   * Replays this record on the given position, which is reloaded from the initial position.
+   *
+   * @param position  the position to be reused
+   * @param handler the handler of the initial position and the positions after each move, or null
+   * @return  the position after the last move
+   * @see UsiRecordReader.Handler
+   */
+  public Position replay(final Position position, final UsiRecordReader.Handler handler) {
+    position.setSfen(initialSfen);
+    for (int move : moves) {
+      if (handler != null) {
+        handler.handle(position, Move.valueOf(move));
+      }
+      position.doMove(Move.valueOf(move));
+    }
+    if (handler != null) {
+      handler.handle(position, Move.MOVE_NONE);
+    }
+    return position;
+  }
+
+  /**
+   * Returns a new position after the last move.
+   *
+   * @return  a new position
+   */
+  public Position toPosition() {
+    return replay(Position.createPositionFromSfen(initialSfen), null);
+  }
+
+  /**
+   * Returns the record as the USI {@code position} command, which can be read by
+   * {@link UsiRecordReader}.
+   *
+   * @return  the USI string
+   */
+  public String toUsi() {
+    StringBuilder sb = new StringBuilder("position ");
+    if (initialSfen.equals(Position.HIRATE_SFEN)) {
+      sb.append("startpos");
+    } else {
+      sb.append("sfen ").append(initialSfen);
+    }
+    if (moves.length > 0) {
+      sb.append(" moves");
+      for (int move : moves) {
+        sb.append(' ').append(Move.valueOf(move));
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof GameRecord)) {
+      return false;
+    }
+    GameRecord that = (GameRecord) o;
+    return initialSfen.equals(that.initialSfen) && Arrays.equals(moves, that.moves);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * initialSfen.hashCode() + Arrays.hashCode(moves);
+  }
+
+  @Override
+  public String toString() {
+    return toUsi();
+  }
+}
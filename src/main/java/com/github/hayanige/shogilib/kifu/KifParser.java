@@ -0,0 +1,291 @@
+package com.github.hayanige.shogilib.kifu;
+
+import com.github.hayanige.shogilib.Color;
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Piece;
+import com.github.hayanige.shogilib.PieceType;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.Rank;
+import com.github.hayanige.shogilib.Square;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A parser of the KIF format, e.g. {@code 1 ７六歩(77)}.
+ * <p>
+ * It reads the initial position (the handicap and the board diagram called BOD) and the moves of
+ * the main line, and ignores the other information such as the player names, the time, the
+ * comments and the variations.
+ * <p>
+ * The parser reuses one position to validate the moves, so it is not thread-safe. Use one parser
+ * per thread.
+ */
+public final class KifParser implements KifuParser {
+
+  private static final String HANDICAP_BOARD =
+      "/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL w - 1";
+
+  // SFEN of the handicap positions (Teaiwari in Japanese)
+  private static final Map<String, String> handicaps = new HashMap<>();
+  static {
+    handicaps.put("平手", Position.HIRATE_SFEN);
+    handicaps.put("香落ち", "lnsgkgsn1/1r5b1" + HANDICAP_BOARD);
+    handicaps.put("右香落ち", "1nsgkgsnl/1r5b1" + HANDICAP_BOARD);
+    handicaps.put("角落ち", "lnsgkgsnl/1r7" + HANDICAP_BOARD);
+    handicaps.put("飛車落ち", "lnsgkgsnl/7b1" + HANDICAP_BOARD);
+    handicaps.put("飛香落ち", "lnsgkgsn1/7b1" + HANDICAP_BOARD);
+    handicaps.put("二枚落ち", "lnsgkgsnl/9" + HANDICAP_BOARD);
+    handicaps.put("三枚落ち", "lnsgkgsn1/9" + HANDICAP_BOARD);
+    handicaps.put("四枚落ち", "1nsgkgsn1/9" + HANDICAP_BOARD);
+    handicaps.put("六枚落ち", "2sgkgs2/9" + HANDICAP_BOARD);
+    handicaps.put("八枚落ち", "3gkg3/9" + HANDICAP_BOARD);
+    handicaps.put("十枚落ち", "4k4/9" + HANDICAP_BOARD);
+  }
+
+  private static final String KANJI_NUMBERS = "一二三四五六七八九";
+
+  private final RecordBuilder builder = new RecordBuilder("KIF");
+  private int boardRank;
+  private boolean finished;
+
+  @Override
+  public GameRecord parse(final BufferedReader reader) throws IOException {
+    builder.clear();
+    builder.setSfen(Position.HIRATE_SFEN);
+    boardRank = 0;
+    finished = false;
+    int lineNumber = 0;
+    boolean empty = true;
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      builder.setLineNumber(++lineNumber);
+      if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '*'
+          || line.charAt(0) == '&') {
+        continue;
+      }
+      empty = false;
+      if (line.startsWith("変化：")) {
+        // the variations follow the main line up to the end of the file
+        while (reader.readLine() != null) {
+          // skip
+        }
+        break;
+      }
+
+      int start = skipSpaces(line, 0);
+      if (start < line.length() && line.charAt(start) >= '0' && line.charAt(start) <= '9') {
+        if (!finished) {
+          parseMove(line, start);
+        }
+      } else if (!builder.isStarted()) {
+        parseHeader(line);
+      }
+    }
+    return empty ? null : builder.build();
+  }
+
+  private void parseHeader(final String line) {
+    if (line.charAt(0) == '|') {
+      parseBoard(line);
+      return;
+    }
+    if (line.startsWith("先手番") || line.startsWith("下手番")) {
+      builder.setSideToMove(Color.BLACK);
+      return;
+    }
+    if (line.startsWith("後手番") || line.startsWith("上手番")) {
+      builder.setSideToMove(Color.WHITE);
+      return;
+    }
+    int separator = line.indexOf('：');
+    if (separator < 0) {
+      return;
+    }
+    String key = line.substring(0, separator);
+    String value = line.substring(separator + 1).strip();
+    switch (key) {
+      case "手合割":
+        String sfen = handicaps.get(value);
+        if (sfen != null) {
+          builder.setSfen(sfen);
+        }
+        break;
+      case "先手の持駒":
+      case "下手の持駒":
+        parseHand(Color.BLACK, value);
+        break;
+      case "後手の持駒":
+      case "上手の持駒":
+        parseHand(Color.WHITE, value);
+        break;
+      default:
+        break;
+    }
+  }
+
+  // e.g. |v香v桂v銀v金v玉v金v銀v桂v香|一
+  private void parseBoard(final String line) {
+    if (boardRank == 0) {
+      for (int i = 0; i < Square.SQUARES_LENGTH; i++) {
+        builder.setPiece(Square.valueOf(i), Piece.NO_PIECE);
+      }
+    }
+    if (boardRank >= Rank.RANKS_LENGTH || line.length() < 19) {
+      throw builder.error("The board is invalid.");
+    }
+    for (int file = 8; file >= 0; file--) {
+      int index = 1 + (8 - file) * 2;
+      char c = line.charAt(index + 1);
+      if (c == '・') {
+        continue;
+      }
+      Color color = line.charAt(index) == 'v' ? Color.WHITE : Color.BLACK;
+      builder.setPiece(Square.valueOf(file * Rank.RANKS_LENGTH + boardRank),
+          Piece.valueOf(color, parsePieceType(c)));
+    }
+    boardRank++;
+  }
+
+  // e.g. 角　歩十八, なし
+  private void parseHand(final Color color, final String value) {
+    for (int index = 0; index < value.length(); ) {
+      index = skipSpaces(value, index);
+      if (index >= value.length() || value.startsWith("なし", index)) {
+        break;
+      }
+      PieceType pt = parsePieceType(value.charAt(index++));
+      int count = 0;
+      for (; index < value.length() && (value.charAt(index) == '十'
+          || KANJI_NUMBERS.indexOf(value.charAt(index)) >= 0); index++) {
+        char c = value.charAt(index);
+        count = c == '十' ? count + 10 : count + KANJI_NUMBERS.indexOf(c) + 1;
+      }
+      for (int i = 0; i < Math.max(count, 1); i++) {
+        builder.addPieceToHand(color, pt);
+      }
+    }
+  }
+
+  // e.g. 1 ７六歩(77), 2 同　歩(33), 3 ２二角成(88), 4 ４五角打, 5 投了
+  private void parseMove(final String line, int index) {
+    while (index < line.length() && line.charAt(index) >= '0' && line.charAt(index) <= '9') {
+      index++;
+    }
+    index = skipSpaces(line, index);
+    if (index >= line.length()) {
+      return;
+    }
+    if (!builder.isStarted()) {
+      builder.start();
+    }
+    Position position = builder.getPosition();
+
+    // the destination
+    Square to;
+    char c = line.charAt(index);
+    if (c == '同') {
+      Move lastMove = position.getLastMove();
+      if (lastMove == Move.MOVE_NONE) {
+        throw builder.error("No move is before " + line.strip() + ".");
+      }
+      to = lastMove.getToSquare();
+      index = skipSpaces(line, index + 1);
+    } else {
+      int file = c >= '１' && c <= '９' ? c - '１' : c - '1';
+      if (file < 0 || file > 8) {
+        // the end of the game, e.g. 投了, 千日手, 詰み
+        finished = true;
+        return;
+      }
+      int rank = index + 1 < line.length() ? KANJI_NUMBERS.indexOf(line.charAt(index + 1)) : -1;
+      if (rank < 0) {
+        throw builder.error("The destination of " + line.strip() + " is invalid.");
+      }
+      to = Square.valueOf(file * Rank.RANKS_LENGTH + rank);
+      index += 2;
+    }
+
+    // the piece, e.g. 歩, 成香
+    if (index >= line.length()) {
+      throw builder.error("The piece of " + line.strip() + " is invalid.");
+    }
+    PieceType pt;
+    if (line.charAt(index) == '成' && index + 1 < line.length()
+        && "香桂銀".indexOf(line.charAt(index + 1)) >= 0) {
+      pt = parsePieceType(line.charAt(index + 1)).getColoredPiece(Color.BLACK)
+          .getPromoted().getPieceType();
+      index += 2;
+    } else {
+      pt = parsePieceType(line.charAt(index++));
+    }
+
+    boolean promote = false;
+    boolean drop = false;
+    if (line.startsWith("不成", index)) {
+      index += 2;
+    } else if (line.startsWith("成", index)) {
+      promote = true;
+      index++;
+    } else if (line.startsWith("打", index)) {
+      drop = true;
+      index++;
+    }
+
+    // the origin, e.g. (77)
+    Square from = null;
+    if (!drop && line.startsWith("(", index)) {
+      int file = index + 1 < line.length() ? line.charAt(index + 1) - '1' : -1;
+      int rank = index + 2 < line.length() ? line.charAt(index + 2) - '1' : -1;
+      if (file < 0 || file > 8 || rank < 0 || rank > 8) {
+        throw builder.error("The origin of " + line.strip() + " is invalid.");
+      }
+      from = Square.valueOf(file * Rank.RANKS_LENGTH + rank);
+    }
+
+    Move move;
+    if (from == null) {
+      if (pt == PieceType.KING || pt.isPromoted() || promote) {
+        throw builder.error("The drop " + line.strip() + " is invalid.");
+      }
+      move = Move.makeMoveDrop(pt, to);
+    } else {
+      if (position.getPiece(from).getPieceType() != pt) {
+        throw builder.error("The piece of " + line.strip() + " is wrong.");
+      }
+      move = promote ? Move.makeMovePromote(from, to) : Move.makeMove(from, to);
+    }
+    builder.play(move);
+  }
+
+  private PieceType parsePieceType(final char c) {
+    switch (c) {
+      case '歩': return PieceType.PAWN;
+      case '香': return PieceType.LANCE;
+      case '桂': return PieceType.KNIGHT;
+      case '銀': return PieceType.SILVER;
+      case '金': return PieceType.GOLD;
+      case '角': return PieceType.BISHOP;
+      case '飛': return PieceType.ROOK;
+      case '玉':
+      case '王': return PieceType.KING;
+      case 'と': return PieceType.PRO_PAWN;
+      case '杏': return PieceType.PRO_LANCE;
+      case '圭': return PieceType.PRO_KNIGHT;
+      case '全': return PieceType.PRO_SILVER;
+      case '馬': return PieceType.HORSE;
+      case '龍':
+      case '竜': return PieceType.DRAGON;
+      default:
+        throw builder.error("The piece " + c + " is invalid.");
+    }
+  }
+
+  private static int skipSpaces(final String line, int index) {
+    while (index < line.length() && (line.charAt(index) == ' ' || line.charAt(index) == '　'
+        || line.charAt(index) == '\t')) {
+      index++;
+    }
+    return index;
+  }
+}
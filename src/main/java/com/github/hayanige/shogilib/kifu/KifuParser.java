@@ -0,0 +1,38 @@
+package com.github.hayanige.shogilib.kifu;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+
+/**
+ * The interface of a parser of game records (Kifu in Japanese).
+ */
+public interface KifuParser {
+
+  /**
+   * Parses the next game from the reader. The reader is read up to the end of the game, so the
+   * games in a file can be read one by one.
+   *
+   * @param reader  the reader
+   * @return  the game record, or null if the reader has no more game
+   * @throws IOException if the reader throws it
+   * @throws IllegalArgumentException if the game is invalid or has an illegal move
+   */
+  GameRecord parse(BufferedReader reader) throws IOException;
+
+  /**
+   * Parses the first game in the text.
+   *
+   * @param text  the text
+   * @return  the game record, or null if the text has no game
+   * @throws IllegalArgumentException if the game is invalid or has an illegal move
+   */
+  default GameRecord parse(final String text) {
+    try {
+      return parse(new BufferedReader(new StringReader(text)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
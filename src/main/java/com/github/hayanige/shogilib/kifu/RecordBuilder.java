@@ -0,0 +1,209 @@
+package com.github.hayanige.shogilib.kifu;
+
+import static com.github.hayanige.shogilib.Square.SQUARES_LENGTH;
+
+import com.github.hayanige.shogilib.Color;
+import com.github.hayanige.shogilib.Hand;
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Piece;
+import com.github.hayanige.shogilib.PieceType;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.Rank;
+import com.github.hayanige.shogilib.Square;
+import java.util.Arrays;
+
+/**
+ * Builds a game record from the initial position and the moves read by a parser.
+ * The position and the buffers are reused for all the games read by the parser.
+ */
+final class RecordBuilder {
+
+  private final String format;
+  private final Piece[] board = new Piece[SQUARES_LENGTH];
+  private final Hand[] hands = new Hand[] { new Hand(), new Hand() };
+  private Color sideToMove;
+
+  private final Position position = Position.createHiratePosition();
+  private final StringBuilder sfen = new StringBuilder(Position.MAX_SFEN_LENGTH);
+  private final int[] legalMoves = new int[Position.MAX_MOVES];
+  private int[] moves = new int[256];
+  private int size;
+  private String initialSfen;
+
+  private int lineNumber;
+
+  RecordBuilder(final String format) {
+    this.format = format;
+    clear();
+  }
+
+  /**
+   * Starts a new game record with an empty board.
+   */
+  void clear() {
+    Arrays.fill(board, Piece.NO_PIECE);
+    hands[Color.BLACK.ordinal()].clear();
+    hands[Color.WHITE.ordinal()].clear();
+    sideToMove = Color.BLACK;
+    size = 0;
+    initialSfen = null;
+  }
+
+  /**
+   * Sets the board, the hands and the side to move from SFEN.
+   */
+  void setSfen(final String sfen) {
+    position.setSfen(sfen);
+    for (int i = 0; i < SQUARES_LENGTH; i++) {
+      board[i] = position.getPiece(Square.valueOf(i));
+    }
+    for (Color color : new Color[] { Color.BLACK, Color.WHITE }) {
+      Hand hand = hands[color.ordinal()];
+      hand.clear();
+      for (int pr = PieceType.PAWN.ordinal(); pr < PieceType.PIECE_RAW_NB; pr++) {
+        for (int i = position.getNumberOfPieceInHand(color, PieceType.valueOf(pr)); i > 0; i--) {
+          hand.add(PieceType.valueOf(pr));
+        }
+      }
+    }
+    sideToMove = position.getSideToMove();
+  }
+
+  Piece getPiece(final Square square) {
+    return board[square.ordinal()];
+  }
+
+  void setPiece(final Square square, final Piece piece) {
+    board[square.ordinal()] = piece;
+  }
+
+  void addPieceToHand(final Color color, final PieceType pr) {
+    if (pr == PieceType.KING || pr.isPromoted()) {
+      throw error("A king or a promoted piece can't be in a hand.");
+    }
+    if (countPieces(pr) >= pr.getFullSetCount()) {
+      throw error("The number of " + pr + " is over.");
+    }
+    hands[color.ordinal()].add(pr);
+  }
+
+  /**
+   * Adds all the pieces that are neither on the board nor in the hands except kings to the hand.
+   */
+  void addRestPiecesToHand(final Color color) {
+    for (int pr = PieceType.PAWN.ordinal(); pr < PieceType.PIECE_RAW_NB; pr++) {
+      PieceType pt = PieceType.valueOf(pr);
+      for (int i = countPieces(pt); i < pt.getFullSetCount(); i++) {
+        hands[color.ordinal()].add(pt);
+      }
+    }
+  }
+
+  private int countPieces(final PieceType pr) {
+    int count = hands[Color.BLACK.ordinal()].count(pr) + hands[Color.WHITE.ordinal()].count(pr);
+    for (Piece piece : board) {
+      if (piece != Piece.NO_PIECE && piece.getRawType() == pr) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  void setSideToMove(final Color sideToMove) {
+    this.sideToMove = sideToMove;
+  }
+
+  boolean isStarted() {
+    return initialSfen != null;
+  }
+
+  /**
+   * Fixes the initial position and starts to play the moves.
+   */
+  void start() {
+    sfen.setLength(0);
+    for (int rank = 0; rank < Rank.RANKS_LENGTH; rank++) {
+      if (rank > 0) {
+        sfen.append('/');
+      }
+      int empty = 0;
+      for (int sq = Square.SQ_91.ordinal() + rank; sq >= 0; sq -= Rank.RANKS_LENGTH) {
+        Piece piece = board[sq];
+        if (piece == Piece.NO_PIECE) {
+          empty++;
+          continue;
+        }
+        if (empty > 0) {
+          sfen.append(empty);
+          empty = 0;
+        }
+        sfen.append(piece);
+      }
+      if (empty > 0) {
+        sfen.append(empty);
+      }
+    }
+    sfen.append(sideToMove == Color.BLACK ? " b " : " w ");
+    Hand black = hands[Color.BLACK.ordinal()];
+    Hand white = hands[Color.WHITE.ordinal()];
+    if (black.isZero() && white.isZero()) {
+      sfen.append('-');
+    } else {
+      sfen.append(black).append(white.toString().toLowerCase());
+    }
+    sfen.append(" 1");
+
+    try {
+      position.setSfen(sfen);
+    } catch (IllegalArgumentException e) {
+      throw error("The initial position is invalid. " + e.getMessage());
+    }
+    initialSfen = position.getSfen();
+  }
+
+  /**
+   * Returns the current position. It must not be modified by the parser.
+   */
+  Position getPosition() {
+    return position;
+  }
+
+  /**
+   * Plays the move after validating it against the legal moves.
+   */
+  void play(final Move move) {
+    if (!isStarted()) {
+      start();
+    }
+    int legalSize = position.generateLegalMoves(legalMoves);
+    int encoded = move.toInt();
+    boolean legal = false;
+    for (int i = 0; i < legalSize && !legal; i++) {
+      legal = legalMoves[i] == encoded;
+    }
+    if (!legal || move == Move.MOVE_NONE) {
+      throw error("The move " + move + " is illegal.");
+    }
+    if (size == moves.length) {
+      moves = Arrays.copyOf(moves, size * 2);
+    }
+    moves[size++] = encoded;
+    position.doMove(move);
+  }
+
+  GameRecord build() {
+    if (!isStarted()) {
+      start();
+    }
+    return new GameRecord(initialSfen, Arrays.copyOf(moves, size));
+  }
+
+  void setLineNumber(final int lineNumber) {
+    this.lineNumber = lineNumber;
+  }
+
+  IllegalArgumentException error(final String message) {
+    return new IllegalArgumentException(
+        "Invalid " + format + ": " + message + " (line " + lineNumber + ")");
+  }
+}
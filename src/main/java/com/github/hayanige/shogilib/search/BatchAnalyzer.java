@@ -0,0 +1,115 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Position;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * An analyzer of many positions at the same time.
+ * <p>
+ * Each position is analyzed on its own virtual thread, so any number of positions can be
+ * submitted without a thread pool to tune. The searches are CPU-bound, so only as many positions
+ * as the parallelism are searched at a time: a virtual thread takes a {@link Searcher} from a pool
+ * of that size before the search and waits while all of them are in use. Each searcher of the pool
+ * has its own transposition table.
+ * <pre>
+ * try (BatchAnalyzer analyzer = new BatchAnalyzer()) {
+ *   List&lt;CompletableFuture&lt;SearchResult&gt;&gt; results =
+ *       analyzer.analyze(sfens.stream(), SearchLimits.depth(6));
+ *   ...
+ * }
+ * </pre>
+ */
+public final class BatchAnalyzer implements AutoCloseable {
+
+  private static final int DEFAULT_HASH_SIZE_MB = 4;
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final BlockingQueue<Searcher> searchers;
+
+  /**
+   * Creates an analyzer searching a position per available processor at a time with
+   * {@link MaterialEvaluator} and transposition tables of 4 MB.
+   */
+  public BatchAnalyzer() {
+    this(Runtime.getRuntime().availableProcessors(), new MaterialEvaluator(),
+        DEFAULT_HASH_SIZE_MB);
+  }
+
+  /**
+   * Creates an analyzer.
+   *
+   * @param parallelism the maximum number of the positions searched at a time
+   * @param evaluator the evaluation function, called concurrently by the searches
+   * @param hashSizeMb  the size of the transposition table of each searcher in megabytes
+   */
+  public BatchAnalyzer(final int parallelism, final Evaluator evaluator, final int hashSizeMb) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+    }
+    searchers = new ArrayBlockingQueue<>(parallelism);
+    for (int i = 0; i < parallelism; i++) {
+      searchers.add(new Searcher(evaluator, new TranspositionTable(hashSizeMb)));
+    }
+  }
+
+  /**
+   * Analyzes a position asynchronously.
+   *
+   * @param sfen  the SFEN of the position
+   * @param limits  the limits of the search
+   * @return  the future of the result, completed exceptionally with a cause of
+   *          {@link IllegalArgumentException} if the SFEN is invalid. As for any asynchronous
+   *          task, {@link CompletableFuture#join()} throws it wrapped in
+   *          {@link CompletionException} and {@link CompletableFuture#get()} in
+   *          {@link java.util.concurrent.ExecutionException}.
+   */
+  public CompletableFuture<SearchResult> analyze(final String sfen, final SearchLimits limits) {
+    return CompletableFuture.supplyAsync(() -> search(sfen, limits), executor);
+  }
+
+  /**
+   * Analyzes all the positions of the stream asynchronously. The stream is consumed before the
+   * method returns, but the positions are searched in the background.
+   *
+   * @param sfens the SFENs of the positions
+   * @param limits  the limits of the search of each position
+   * @return  the futures of the results in the order of the stream
+   * @see #analyze(String, SearchLimits)
+   */
+  public List<CompletableFuture<SearchResult>> analyze(final Stream<String> sfens,
+      final SearchLimits limits) {
+    return sfens.map(sfen -> analyze(sfen, limits)).toList();
+  }
+
+  /**
+   * Waits for all the submitted positions to be analyzed, and shuts down the analyzer.
+   */
+  @Override
+  public void close() {
+    executor.close();
+  }
+
+  private SearchResult search(final String sfen, final SearchLimits limits) {
+    // the position is parsed before waiting for a searcher
+    Position position = Position.createPositionFromSfen(sfen);
+    Searcher searcher;
+    try {
+      searcher = searchers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+    try {
+      return searcher.search(position, limits);
+    } finally {
+      searchers.add(searcher);
+    }
+  }
+}
@@ -0,0 +1,447 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Color;
+import com.github.hayanige.shogilib.Hand;
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Piece;
+import com.github.hayanige.shogilib.PieceType;
+import com.github.hayanige.shogilib.Position;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A mate solver by the depth-first proof-number search (df-pn) of Nagai. It decides whether the
+ * side to move (the attacker) mates by checking moves only, i.e. it solves Tsume Shogi.
+ * <p>
+ * The attacker plays only the checking moves ({@link Position#generateCheckMoves(int[])}) and the
+ * defender plays all the legal moves, which are the evasions. A position where the attacker has
+ * no checking move is not mate, and a position where the defender has no legal move is mate.
+ * A repetition in the search is not mate either, since a perpetual check loses in Shogi. Such a
+ * disproof holds only on the path of the search, so it is never stored in the table.
+ * <p>
+ * The proof and disproof numbers are stored in a {@link ProofTable} keyed by the board and the
+ * attacker's hand, so the positions reached with different hands share their proofs through the
+ * hand dominance. The numbers of the children are summed weakly as in WPNS (the maximum plus the
+ * number of the other unsolved children), since the positions reached by different paths would be
+ * counted many times. The position is played with {@link Position#doMove(Move)} and
+ * {@link Position#undoMove()}, and restored after the search.
+ * <p>
+ * The solver has been tested on problems of up to about 40 plies. Long problems of 100 plies or
+ * more are accepted up to {@link #MAX_PLY}, but aren't known to be solved in practical time.
+ * <p>
+ * A solver holds the buffers and the table, so it is not thread-safe except for {@link #stop()}.
+ */
+public final class DfpnSolver {
+
+  /**
+   * The maximum length of a mate in plies.
+   */
+  public static final int MAX_PLY = 1000;
+
+  // the proof or disproof number of a proven or disproven node
+  private static final int INFINITE_NUMBER = Integer.MAX_VALUE / 2;
+
+  // the length of a disproof regardless of the depth
+  private static final int UNLIMITED_LENGTH = Integer.MAX_VALUE;
+
+  // the number of nodes between the checks of the time limit
+  private static final int CHECK_INTERVAL = 1024;
+
+  private static final int DEFAULT_TABLE_SIZE_MB = 32;
+
+  // the 32-bit representation of a hand having one piece of each raw piece type
+  private static final int[] HAND_UNITS = new int[PieceType.values().length];
+  static {
+    for (PieceType pt : PieceType.values()) {
+      if (pt != PieceType.NONE && pt != PieceType.KING && !pt.isPromoted()) {
+        Hand hand = new Hand();
+        hand.add(pt);
+        HAND_UNITS[pt.ordinal()] = hand.toInt();
+      }
+    }
+  }
+
+  private final ProofTable table;
+
+  // buffers indexed by the ply, created when the ply is reached
+  private final int[][] moves = new int[MAX_PLY + 1][];
+  private final int[][] childPns = new int[MAX_PLY + 1][];
+  private final int[][] childDns = new int[MAX_PLY + 1][];
+  private final int[][] childLengths = new int[MAX_PLY + 1][];
+  private final int[][] childProofHands = new int[MAX_PLY + 1][];
+  private final boolean[][] childRepetitions = new boolean[MAX_PLY + 1][];
+  private final long[] keys = new long[MAX_PLY + 1];
+
+  private Position position;
+  private Color attacker;
+  private int maxPly;
+  private long nodes;
+  private long nodeLimit;
+  private long deadline;
+  private volatile boolean stopped;
+
+  // the numbers of the node searched last
+  private int resultPn;
+  private int resultDn;
+  private int resultLength;
+  private int resultProofHand;
+  // Is the disproof of the node searched last due to a repetition on the current path?
+  private boolean resultRepetition;
+
+  /**
+   * Creates a solver with a table of 32 MB.
+   */
+  public DfpnSolver() {
+    this(DEFAULT_TABLE_SIZE_MB);
+  }
+
+  /**
+   * Creates a solver.
+   *
+   * @param tableSizeMb the size of the proof table in megabytes
+   */
+  public DfpnSolver(final int tableSizeMb) {
+    table = new ProofTable(tableSizeMb);
+  }
+
+  /**
+   * Solves the mate of the side to move. The position is restored after the search.
+   * <p>
+   * The depth of the limits is the maximum length of the mate in plies, and {@link
+   * MateResult.Status#NO_MATE} means no mate within the length if it is given. The nodes and the
+   * time of the limits stop the search with {@link MateResult.Status#UNKNOWN}.
+   *
+   * @param position  the position
+   * @param limits  the limits of the search
+   * @return  the result
+   */
+  public MateResult solve(final Position position, final SearchLimits limits) {
+    long start = System.currentTimeMillis();
+    table.clear();
+    this.position = position;
+    attacker = position.getSideToMove();
+    maxPly = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY) : MAX_PLY;
+    nodes = 0;
+    nodeLimit = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+    deadline = limits.getTimeMillis() > 0 ? start + limits.getTimeMillis() : Long.MAX_VALUE;
+    stopped = false;
+
+    search(0, INFINITE_NUMBER, INFINITE_NUMBER);
+
+    MateResult.Status status;
+    List<Move> pv = List.of();
+    if (stopped) {
+      status = MateResult.Status.UNKNOWN;
+    } else if (resultPn == 0) {
+      status = MateResult.Status.MATE;
+      pv = getPv();
+    } else if (resultDn == 0) {
+      status = MateResult.Status.NO_MATE;
+    } else {
+      // the numbers reached the infinity without deciding it
+      status = MateResult.Status.UNKNOWN;
+    }
+    return new MateResult(status, pv, nodes, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Stops the search. It can be called from any thread.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  // Searches the node until its proof number reaches thpn or its disproof number reaches thdn,
+  // and sets the numbers to the result. The attacker moves at the even plies (OR nodes) and the
+  // defender at the odd plies (AND nodes).
+  private void search(final int ply, final int thpn, final int thdn) {
+    if (countNode()) {
+      return;
+    }
+    boolean attacking = (ply & 1) == 0;
+    if (attacking && ply >= maxPly) {
+      // no mate within the plies left
+      setResult(INFINITE_NUMBER, 0, 0);
+      return;
+    }
+
+    long key = position.getBoardHash();
+    int hand = position.getHandValue(attacker);
+    int[] buffer = getBuffer(moves, ply);
+    int size = attacking
+        ? position.generateCheckMoves(buffer)
+        : position.generateLegalMoves(buffer);
+    if (size == 0) {
+      if (attacking) {
+        setResult(INFINITE_NUMBER, 0, UNLIMITED_LENGTH);
+        table.store(key, hand, INFINITE_NUMBER, 0, UNLIMITED_LENGTH, 1);
+      } else {
+        setResult(0, INFINITE_NUMBER, 0);
+        resultProofHand = getMatedProofHand();
+        table.store(key, resultProofHand, 0, INFINITE_NUMBER, 0, 1);
+      }
+      return;
+    }
+
+    // the numbers of the children
+    int[] pns = getBuffer(childPns, ply);
+    int[] dns = getBuffer(childDns, ply);
+    int[] lengths = getBuffer(childLengths, ply);
+    int[] proofHands = getBuffer(childProofHands, ply);
+    if (childRepetitions[ply] == null) {
+      childRepetitions[ply] = new boolean[Position.MAX_MOVES];
+    }
+    boolean[] repetitions = childRepetitions[ply];
+    keys[ply] = position.getZobristHash();
+    for (int i = 0; i < size; i++) {
+      position.doMove(Move.valueOf(buffer[i]));
+      repetitions[i] = isRepeated(ply + 1);
+      if (repetitions[i]) {
+        pns[i] = INFINITE_NUMBER;
+        dns[i] = 0;
+        lengths[i] = UNLIMITED_LENGTH;
+      } else {
+        long childKey = position.getBoardHash();
+        int childHand = position.getHandValue(attacker);
+        int index = table.find(childKey, childHand, maxPly - ply - 1);
+        if (index >= 0) {
+          pns[i] = table.getPn(index);
+          dns[i] = table.getDn(index);
+          lengths[i] = table.getLength(index);
+          proofHands[i] = table.getHand(index);
+        } else if (attacking) {
+          // The more evasions the defender has, the harder to prove the mate.
+          // It is stored so as not to generate the evasions again.
+          int evasions = position.generateLegalMoves(getBuffer(moves, ply + 1));
+          pns[i] = evasions;
+          dns[i] = evasions == 0 ? INFINITE_NUMBER : 1;
+          lengths[i] = 0;
+          proofHands[i] = evasions == 0 ? getMatedProofHand() : childHand;
+          table.store(childKey, proofHands[i], pns[i], dns[i], 0, 0);
+        } else {
+          pns[i] = 1;
+          dns[i] = 1;
+          lengths[i] = 0;
+        }
+      }
+      position.undoMove();
+    }
+
+    long startNodes = nodes;
+    int pn;
+    int dn;
+    while (true) {
+      // The attacker chooses the child of the minimum proof number, and the defender chooses the
+      // child of the minimum disproof number. The second minimum limits the search of the child.
+      // The other numbers are summed weakly, so the threshold of the child is less than the
+      // threshold of the node by the other unsolved children.
+      int[] minNumbers = attacking ? pns : dns;
+      int[] sumNumbers = attacking ? dns : pns;
+      int best = 0;
+      int min = INFINITE_NUMBER;
+      int secondMin = INFINITE_NUMBER;
+      int max = 0;
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        if (minNumbers[i] < min) {
+          secondMin = min;
+          min = minNumbers[i];
+          best = i;
+        } else if (minNumbers[i] < secondMin) {
+          secondMin = minNumbers[i];
+        }
+        if (sumNumbers[i] > 0) {
+          max = Math.max(max, sumNumbers[i]);
+          count++;
+        }
+      }
+      int sum = count == 0 ? 0 : Math.min(max + count - 1, INFINITE_NUMBER);
+      pn = attacking ? min : sum;
+      dn = attacking ? sum : min;
+      if (pn >= thpn || dn >= thdn) {
+        break;
+      }
+
+      int childThpn;
+      int childThdn;
+      if (attacking) {
+        childThpn = Math.min(thpn, grow(secondMin));
+        childThdn = thdn - count + 1;
+      } else {
+        childThpn = thpn - count + 1;
+        childThdn = Math.min(thdn, grow(secondMin));
+      }
+      position.doMove(Move.valueOf(buffer[best]));
+      search(ply + 1, childThpn, childThdn);
+      position.undoMove();
+      if (stopped) {
+        return;
+      }
+      pns[best] = resultPn;
+      dns[best] = resultDn;
+      lengths[best] = resultLength;
+      proofHands[best] = resultProofHand;
+      repetitions[best] = resultRepetition;
+    }
+
+    if (pn != 0) {
+      // The length of the disproof is the plies within which the attacker doesn't mate, the
+      // shortest of all the moves for the attacker, or the longest disproven move for the
+      // defender. A disproof due to a repetition holds only on the current path, so it isn't
+      // stored: the attacker's node depends on it if any move does, and the defender's node if
+      // all the disproven moves do.
+      int length = 0;
+      boolean repetition = false;
+      if (dn == 0) {
+        length = attacking ? UNLIMITED_LENGTH : -1;
+        repetition = !attacking;
+        for (int i = 0; i < size; i++) {
+          int childLength = lengths[i] == UNLIMITED_LENGTH ? UNLIMITED_LENGTH : lengths[i] + 1;
+          if (attacking) {
+            length = Math.min(length, childLength);
+            repetition |= repetitions[i];
+          } else if (dns[i] == 0 && repetition && !repetitions[i]) {
+            // the first disproven move not due to a repetition
+            length = childLength;
+            repetition = false;
+          } else if (dns[i] == 0 && repetition == repetitions[i]) {
+            length = Math.max(length, childLength);
+          }
+        }
+      }
+      setResult(pn, dn, length);
+      resultRepetition = repetition;
+      if (!repetition) {
+        table.store(key, hand, pn, dn, length,
+            (int) Math.min(nodes - startNodes, Integer.MAX_VALUE));
+      }
+      return;
+    }
+
+    // The length of the mate is the shortest proven move of the attacker, or the longest move of
+    // the defender. The proof hand is the least hand of the attacker to mate, the one of the
+    // shortest move before the move for the attacker, or the union of all the moves for the
+    // defender.
+    int length = attacking ? Integer.MAX_VALUE : 0;
+    int proofHand = attacking ? hand : getMatedProofHand();
+    for (int i = 0; i < size; i++) {
+      if (attacking && pns[i] == 0 && lengths[i] + 1 < length) {
+        length = lengths[i] + 1;
+        proofHand = getProofHandBefore(Move.valueOf(buffer[i]), proofHands[i]);
+      } else if (!attacking) {
+        length = Math.max(length, lengths[i] + 1);
+        proofHand = ProofTable.max(proofHand, proofHands[i]);
+      }
+    }
+    setResult(0, INFINITE_NUMBER, length);
+    resultProofHand = proofHand;
+    table.store(key, proofHand, 0, INFINITE_NUMBER, length,
+        (int) Math.min(nodes - startNodes, Integer.MAX_VALUE));
+  }
+
+  // Returns the proof hand of the defender's position. The attacker needs the pieces of the kinds
+  // the defender doesn't have, since they would be the defender's and could be dropped to
+  // interpose if the attacker didn't have them.
+  private int getMatedProofHand() {
+    return ProofTable.lacking(position.getHandValue(attacker),
+        position.getHandValue(attacker.getOpponent()));
+  }
+
+  // Returns the proof hand before the attacker's move from the proof hand after the move.
+  private int getProofHandBefore(final Move move, final int proofHand) {
+    if (move.isDrop()) {
+      return proofHand + HAND_UNITS[move.getPieceType().ordinal()];
+    }
+    Piece captured = position.getPiece(move.getToSquare());
+    if (captured != Piece.NO_PIECE) {
+      int unit = HAND_UNITS[captured.getRawType().ordinal()];
+      if (ProofTable.dominates(proofHand, unit)) {
+        return proofHand - unit;
+      }
+    }
+    return proofHand;
+  }
+
+  // Follows the proven moves in the table from the root. The attacker chooses the shortest mate
+  // and the defender chooses the longest one.
+  private List<Move> getPv() {
+    List<Move> pv = new ArrayList<>();
+    for (int ply = 0; ply <= maxPly; ply++) {
+      boolean attacking = (ply & 1) == 0;
+      int[] buffer = getBuffer(moves, ply);
+      int size = attacking
+          ? position.generateCheckMoves(buffer)
+          : position.generateLegalMoves(buffer);
+      keys[ply] = position.getZobristHash();
+      Move bestMove = null;
+      int bestLength = attacking ? Integer.MAX_VALUE : -1;
+      for (int i = 0; i < size; i++) {
+        Move move = Move.valueOf(buffer[i]);
+        position.doMove(move);
+        if (!isRepeated(ply + 1)) {
+          int index = table.find(position.getBoardHash(), position.getHandValue(attacker),
+              maxPly - ply - 1);
+          if (index >= 0 && table.getPn(index) == 0) {
+            int length = table.getLength(index);
+            if (attacking ? length < bestLength : length > bestLength) {
+              bestMove = move;
+              bestLength = length;
+            }
+          }
+        }
+        position.undoMove();
+      }
+      if (bestMove == null) {
+        break;
+      }
+      position.doMove(bestMove);
+      pv.add(bestMove);
+    }
+    for (int i = 0; i < pv.size(); i++) {
+      position.undoMove();
+    }
+    return pv;
+  }
+
+  // Is the position the same as a position of the same side in the search?
+  private boolean isRepeated(final int ply) {
+    long key = position.getZobristHash();
+    for (int i = ply - 2; i >= 0; i -= 2) {
+      if (keys[i] == key) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // counts the node and returns true if the search has to stop
+  private boolean countNode() {
+    nodes++;
+    if (nodes % CHECK_INTERVAL == 0 && System.currentTimeMillis() >= deadline) {
+      stopped = true;
+    }
+    if (nodes >= nodeLimit) {
+      stopped = true;
+    }
+    return stopped;
+  }
+
+  // the threshold of the best child, a little larger than the second best (1 + epsilon trick)
+  private static int grow(final int number) {
+    return number >= INFINITE_NUMBER ? INFINITE_NUMBER : number + number / 4 + 1;
+  }
+
+  private void setResult(final int pn, final int dn, final int length) {
+    resultPn = pn;
+    resultDn = dn;
+    resultLength = length;
+    resultRepetition = false;
+  }
+
+  private static int[] getBuffer(final int[][] buffers, final int ply) {
+    if (buffers[ply] == null) {
+      buffers[ply] = new int[Position.MAX_MOVES];
+    }
+    return buffers[ply];
+  }
+}
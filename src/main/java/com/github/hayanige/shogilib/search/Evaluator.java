@@ -0,0 +1,19 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Position;
+
+/**
+ * The interface of a static evaluation function.
+ */
+@FunctionalInterface
+public interface Evaluator {
+
+  /**
+   * Evaluates the position from the point of view of the side to move.
+   * The score must be in the range of {@code (-Searcher.MATE_IN_MAX_PLY, Searcher.MATE_IN_MAX_PLY)}.
+   *
+   * @param position  the position
+   * @return  the score in centipawns, positive if the side to move is better
+   */
+  int evaluate(Position position);
+}
@@ -0,0 +1,180 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Position;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A parallel searcher by Lazy SMP. The main thread and the helper threads search the same
+ * position at the same time, and share the results only through one {@link TranspositionTable}.
+ * <p>
+ * Each thread has its own {@link Searcher}, i.e. its own copy of the position and move ordering
+ * state, and the helpers of odd indices start the iterative deepening one ply deeper than the
+ * others so that the threads don't search the same nodes in the same order. The search stops when
+ * a limit is reached or any thread completes its iterations, and the result of the deepest
+ * completed iteration is returned. The nodes are counted by each thread and summed up after the
+ * threads stop, so the reported number of the nodes is exactly the number of the searched nodes.
+ * A node limit is checked against the sum in batches of 1024 nodes per thread, so the search may
+ * exceed the limit by about 1024 nodes per thread.
+ * <p>
+ * The helper threads are daemon threads kept during the lifetime of the searcher. Call
+ * {@link #close()} to terminate them. A searcher is not thread-safe except for {@link #stop()}.
+ */
+public final class LazySmpSearcher implements AutoCloseable {
+
+  private static final int DEFAULT_HASH_SIZE_MB = 64;
+
+  private final TranspositionTable table;
+  private final Searcher[] searchers;
+  private final ExecutorService executor;
+  private volatile SearchControl control = new SearchControl(SearchLimits.INFINITE, 0);
+
+  /**
+   * Creates a searcher with a thread per available processor, {@link MaterialEvaluator} and a
+   * transposition table of 64 MB.
+   */
+  public LazySmpSearcher() {
+    this(Runtime.getRuntime().availableProcessors(), new MaterialEvaluator(),
+        new TranspositionTable(DEFAULT_HASH_SIZE_MB));
+  }
+
+  /**
+   * Creates a searcher.
+   *
+   * @param threads the number of the threads including the main thread, i.e. the thread calling
+   *                {@link #search(Position, SearchLimits)}
+   * @param evaluator the evaluation function, called concurrently by the threads
+   * @param table the transposition table
+   */
+  public LazySmpSearcher(final int threads, final Evaluator evaluator,
+      final TranspositionTable table) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+    }
+    this.table = table;
+    searchers = new Searcher[threads];
+    for (int i = 0; i < threads; i++) {
+      searchers[i] = new Searcher(evaluator, table);
+    }
+    executor = threads > 1 ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+      Thread thread = new Thread(runnable, "lazy-smp-helper");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+  }
+
+  /**
+   * Returns the number of the threads including the main thread.
+   *
+   * @return  the number of the threads
+   */
+  public int getThreads() {
+    return searchers.length;
+  }
+
+  /**
+   * Returns the transposition table shared by the threads.
+   *
+   * @return  the transposition table
+   */
+  public TranspositionTable getTranspositionTable() {
+    return table;
+  }
+
+  /**
+   * Searches the best move of the position within the limits on all the threads. The position is
+   * searched by the calling thread and restored after the search, and the helper threads search
+   * the copies of it.
+   *
+   * @param position  the position
+   * @param limits  the limits of the search
+   * @return  the result of the deepest completed iteration, with the nodes of all the threads
+   */
+  public SearchResult search(final Position position, final SearchLimits limits) {
+    long start = System.currentTimeMillis();
+    table.newSearch();
+    SearchControl control = new SearchControl(limits, start);
+    this.control = control;
+
+    List<Future<SearchResult>> helpers = new ArrayList<>(searchers.length - 1);
+    for (int i = 1; i < searchers.length; i++) {
+      Searcher helper = searchers[i];
+      Position copy = position.copy();
+      int startDepth = 1 + (i & 1);
+      helpers.add(executor.submit(() -> {
+        try {
+          return helper.search(copy, limits, control, Long.MAX_VALUE, startDepth);
+        } finally {
+          control.stop();
+        }
+      }));
+    }
+
+    SearchResult best;
+    try {
+      best = searchers[0].search(position, limits, control, Long.MAX_VALUE, 1);
+    } finally {
+      control.stop();
+    }
+    for (Future<SearchResult> helper : helpers) {
+      SearchResult result = getResult(helper);
+      if (result.getDepth() > best.getDepth()) {
+        best = result;
+      }
+    }
+
+    long nodes = 0;
+    for (Searcher searcher : searchers) {
+      nodes += searcher.getNodes();
+    }
+    return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(), best.getPv(),
+        nodes, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Stops the search. It can be called from any thread.
+   */
+  public void stop() {
+    control.stop();
+  }
+
+  /**
+   * Terminates the helper threads. The searcher can't be used after it is closed.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private static SearchResult getResult(final Future<SearchResult> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          // the helper stops soon, since the search has been stopped
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
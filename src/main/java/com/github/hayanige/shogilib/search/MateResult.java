@@ -0,0 +1,96 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Move;
+import java.util.List;
+
+/**
+ * The result of a mate search: whether the attacker mates, the mating sequence and the
+ * statistics.
+ */
+public final class MateResult {
+
+  /**
+   * The status of a mate search.
+   */
+  public enum Status {
+    /** The attacker mates. */
+    MATE,
+    /** The attacker can't mate. */
+    NO_MATE,
+    /** The search reached a limit or was stopped before deciding it. */
+    UNKNOWN
+  }
+
+  private final Status status;
+  private final List<Move> pv;
+  private final long nodes;
+  private final long timeMillis;
+
+  MateResult(final Status status, final List<Move> pv, final long nodes, final long timeMillis) {
+    this.status = status;
+    this.pv = List.copyOf(pv);
+    this.nodes = nodes;
+    this.timeMillis = timeMillis;
+  }
+
+  /**
+   * Returns the status of the search.
+   *
+   * @return  the status
+   */
+  public Status getStatus() {
+    return status;
+  }
+
+  /**
+   * Does the attacker mate?
+   *
+   * @return  true if the status is {@link Status#MATE}
+   */
+  public boolean isMate() {
+    return status == Status.MATE;
+  }
+
+  /**
+   * Returns the mating sequence from the attacker's first move to the mate, or an empty list if
+   * the attacker doesn't mate. The attacker's moves are chosen to mate soonest and the defender's
+   * moves to resist longest among the proven moves, so it isn't always the shortest mate.
+   *
+   * @return  the mating sequence
+   */
+  public List<Move> getPv() {
+    return pv;
+  }
+
+  /**
+   * Returns the number of the searched nodes.
+   *
+   * @return  the number of the nodes
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the elapsed time of the search.
+   *
+   * @return  the time in milliseconds
+   */
+  public long getTimeMillis() {
+    return timeMillis;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(status);
+    if (!pv.isEmpty()) {
+      sb.append(" in ").append(pv.size()).append(" plies:");
+      for (Move move : pv) {
+        sb.append(' ').append(move);
+      }
+    }
+    sb.append(" (nodes ").append(nodes).append(", time ").append(timeMillis).append(')');
+    return sb.toString();
+  }
+}
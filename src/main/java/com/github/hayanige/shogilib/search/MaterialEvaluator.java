@@ -0,0 +1,62 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Color;
+import com.github.hayanige.shogilib.Piece;
+import com.github.hayanige.shogilib.PieceType;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.Square;
+
+/**
+ * An evaluation function counting only the values of the pieces on the board and in the hands.
+ * The values are the ones used by YaneuraOu.
+ */
+public final class MaterialEvaluator implements Evaluator {
+
+  // the values of the pieces indexed by the ordinal of the piece type
+  private static final int[] PIECE_VALUES = new int[] {
+      0,    // NONE
+      90,   // PAWN
+      315,  // LANCE
+      405,  // KNIGHT
+      495,  // SILVER
+      855,  // BISHOP
+      990,  // ROOK
+      540,  // GOLD
+      15000, // KING
+      540,  // PRO_PAWN
+      540,  // PRO_LANCE
+      540,  // PRO_KNIGHT
+      540,  // PRO_SILVER
+      945,  // HORSE
+      1395  // DRAGON
+  };
+
+  /**
+   * Returns the value of the piece type.
+   *
+   * @param pt  the piece type
+   * @return  the value in centipawns
+   */
+  public static int getValue(final PieceType pt) {
+    return PIECE_VALUES[pt.ordinal()];
+  }
+
+  @Override
+  public int evaluate(final Position position) {
+    int score = 0;
+    for (int i = 0; i < Square.SQUARES_LENGTH; i++) {
+      Piece piece = position.getPiece(Square.valueOf(i));
+      if (piece == Piece.NO_PIECE || piece.getPieceType() == PieceType.KING) {
+        continue;
+      }
+      int value = PIECE_VALUES[piece.getPieceType().ordinal()];
+      score += piece.getColor() == Color.BLACK ? value : -value;
+    }
+    for (int pr = PieceType.PAWN.ordinal(); pr < PieceType.PIECE_RAW_NB; pr++) {
+      PieceType pt = PieceType.valueOf(pr);
+      score += PIECE_VALUES[pr] * (position.getNumberOfPieceInHand(Color.BLACK, pt)
+          - position.getNumberOfPieceInHand(Color.WHITE, pt));
+    }
+    return position.getSideToMove() == Color.BLACK ? score : -score;
+  }
+}
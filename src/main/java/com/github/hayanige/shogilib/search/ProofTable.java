@@ -0,0 +1,189 @@
+package com.github.hayanige.shogilib.search;
+
+import java.util.Arrays;
+
+/**
+ * The table of the proof and disproof numbers used by {@link DfpnSolver}.
+ * <p>
+ * An entry is keyed by the Zobrist hash of the board ({@link
+ * com.github.hayanige.shogilib.Position#getBoardHash()}) and the hand of the attacker, and the
+ * entries of the same board are stored in the same bucket. So a lookup can use the hand
+ * dominance: if the attacker mates with a hand, it also mates with a superior hand, and if the
+ * attacker can't mate with a hand, it can't mate with an inferior hand either.
+ * <p>
+ * The hands are compared in their 32-bit representation ({@link
+ * com.github.hayanige.shogilib.Hand#toInt()}), where the number of each piece has a spare top
+ * bit. Subtracting a hand from another borrows a spare bit iff the latter has more pieces of the
+ * kind.
+ */
+final class ProofTable {
+
+  // the spare top bits of the pawn (8 bits) and the other pieces (4 bits each) in a hand
+  private static final int HAND_BORROW_MASK = 0x88888880;
+
+  // the masks of the numbers of the pawn, lance, knight, silver, bishop, rook and gold in a hand
+  private static final int[] HAND_MASKS = {
+      0x1f, 0x7 << 8, 0x7 << 12, 0x7 << 16, 0x3 << 20, 0x3 << 24, 0x7 << 28
+  };
+
+  private static final int BUCKET_ENTRIES = 8;
+  private static final int ENTRY_BYTES = Long.BYTES + 5 * Integer.BYTES;
+  private static final int MAX_BUCKETS = 1 << 24;
+
+  private final long[] keys;
+  private final int[] hands;
+  private final int[] pns;
+  private final int[] dns;
+  private final int[] lengths;
+  private final int[] amounts;
+  private final int bucketMask;
+
+  ProofTable(final int sizeMb) {
+    if (sizeMb <= 0) {
+      throw new IllegalArgumentException("The size must be positive: " + sizeMb);
+    }
+    long buckets = Long.highestOneBit(
+        (long) sizeMb * 1024 * 1024 / (ENTRY_BYTES * BUCKET_ENTRIES));
+    buckets = Math.max(Math.min(buckets, MAX_BUCKETS), 1);
+    int size = (int) buckets * BUCKET_ENTRIES;
+    keys = new long[size];
+    hands = new int[size];
+    pns = new int[size];
+    dns = new int[size];
+    lengths = new int[size];
+    amounts = new int[size];
+    bucketMask = (int) buckets - 1;
+  }
+
+  /**
+   * Is the hand superior or equal to the other hand, i.e. does it have at least as many pieces of
+   * every kind?
+   */
+  static boolean dominates(final int hand, final int other) {
+    return ((hand - other) & HAND_BORROW_MASK) == 0;
+  }
+
+  /**
+   * Returns the hand having the more pieces of each kind of the two hands.
+   */
+  static int max(final int hand, final int other) {
+    int result = 0;
+    for (int mask : HAND_MASKS) {
+      result |= Math.max(hand & mask, other & mask);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the pieces of the hand of the kinds which the other hand doesn't have.
+   */
+  static int lacking(final int hand, final int other) {
+    int result = 0;
+    for (int mask : HAND_MASKS) {
+      if ((other & mask) == 0) {
+        result |= hand & mask;
+      }
+    }
+    return result;
+  }
+
+  void clear() {
+    Arrays.fill(pns, 0);
+    Arrays.fill(dns, 0);
+  }
+
+  /**
+   * Finds the entry for the board and the hand: a proof with an inferior or equal hand, a
+   * disproof with a superior or equal hand, or the entry of the same hand in this order. The
+   * proofs longer than the depth and the disproofs shorter than the depth are ignored, since they
+   * don't tell the result within the depth.
+   *
+   * @param depth the number of the plies left to search
+   * @return  the index of the entry, or -1 if not found
+   */
+  int find(final long key, final int hand, final int depth) {
+    int bucket = getBucket(key);
+    int exact = -1;
+    for (int i = bucket; i < bucket + BUCKET_ENTRIES; i++) {
+      if (keys[i] != key || isEmpty(i)) {
+        continue;
+      }
+      if (pns[i] == 0) {
+        if (lengths[i] <= depth && dominates(hand, hands[i])) {
+          return i;
+        }
+      } else if (dns[i] == 0) {
+        if (lengths[i] >= depth && dominates(hands[i], hand)) {
+          return i;
+        }
+      } else if (hands[i] == hand) {
+        exact = i;
+      }
+    }
+    return exact;
+  }
+
+  int getPn(final int index) {
+    return pns[index];
+  }
+
+  int getDn(final int index) {
+    return dns[index];
+  }
+
+  int getHand(final int index) {
+    return hands[index];
+  }
+
+  int getLength(final int index) {
+    return lengths[index];
+  }
+
+  /**
+   * Stores the numbers of the board and the hand. The entry of the same board and hand is
+   * overwritten unless it is a proof or a disproof and the new one is not the same kind, since a
+   * proof too long for a depth is still valid for a deeper one, and so is a disproof for a
+   * shallower one. If the bucket is full, the entry of the least search effort is replaced.
+   *
+   * @param length  the length of the mate in plies if proven, or the number of the plies within
+   *                which the attacker doesn't mate if disproven
+   * @param amount  the number of the nodes searched for the numbers
+   */
+  void store(final long key, final int hand, final int pn, final int dn, final int length,
+      final int amount) {
+    int bucket = getBucket(key);
+    int replace = bucket;
+    int replaceAmount = Integer.MAX_VALUE;
+    for (int i = bucket; i < bucket + BUCKET_ENTRIES; i++) {
+      if (isEmpty(i) || (keys[i] == key && hands[i] == hand
+          && (!isTerminal(i) || (pns[i] == 0) == (pn == 0) && (dns[i] == 0) == (dn == 0)))) {
+        replace = i;
+        break;
+      }
+      int value = isTerminal(i) ? Integer.MAX_VALUE - 1 : amounts[i];
+      if (value < replaceAmount) {
+        replace = i;
+        replaceAmount = value;
+      }
+    }
+    keys[replace] = key;
+    hands[replace] = hand;
+    pns[replace] = pn;
+    dns[replace] = dn;
+    lengths[replace] = length;
+    amounts[replace] = amount;
+  }
+
+  private boolean isEmpty(final int index) {
+    // pn and dn are never 0 at the same time
+    return pns[index] == 0 && dns[index] == 0;
+  }
+
+  private boolean isTerminal(final int index) {
+    return pns[index] == 0 || dns[index] == 0;
+  }
+
+  private int getBucket(final long key) {
+    return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_ENTRIES;
+  }
+}
@@ -0,0 +1,38 @@
+package com.github.hayanige.shogilib.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The limits and the stop signal of a search shared by the searchers of the search.
+ * <p>
+ * Each searcher counts its nodes by itself and adds them to the shared counter in batches, so the
+ * searchers don't contend for the counter at every node.
+ */
+final class SearchControl {
+
+  private final long nodeLimit;
+  private final long deadline;
+  private final AtomicLong nodes = new AtomicLong();
+  private volatile boolean stopped;
+
+  SearchControl(final SearchLimits limits, final long startMillis) {
+    nodeLimit = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+    deadline = limits.getTimeMillis() > 0 ? startMillis + limits.getTimeMillis()
+        : Long.MAX_VALUE;
+  }
+
+  boolean isStopped() {
+    return stopped;
+  }
+
+  void stop() {
+    stopped = true;
+  }
+
+  // adds the nodes searched by a searcher, and stops the search if a limit is reached
+  void addNodes(final long count) {
+    if (nodes.addAndGet(count) >= nodeLimit || System.currentTimeMillis() >= deadline) {
+      stopped = true;
+    }
+  }
+}
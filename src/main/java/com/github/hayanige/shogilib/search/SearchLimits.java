@@ -0,0 +1,95 @@
+package com.github.hayanige.shogilib.search;
+
+/**
+ * The limits of a search. A limit of 0 means no limit. The search stops when any of the limits
+ * is reached, or it is stopped by {@link Searcher#stop()}.
+ */
+public final class SearchLimits {
+
+  /**
+   * No limit. The search continues until it is stopped.
+   */
+  public static final SearchLimits INFINITE = new SearchLimits(0, 0, 0);
+
+  private final int depth;
+  private final long nodes;
+  private final long timeMillis;
+
+  /**
+   * Creates limits.
+   *
+   * @param depth the maximum depth of the iterative deepening
+   * @param nodes the maximum number of the nodes
+   * @param timeMillis  the maximum time in milliseconds
+   */
+  public SearchLimits(final int depth, final long nodes, final long timeMillis) {
+    if (depth < 0 || nodes < 0 || timeMillis < 0) {
+      throw new IllegalArgumentException("The limits must not be negative.");
+    }
+    this.depth = depth;
+    this.nodes = nodes;
+    this.timeMillis = timeMillis;
+  }
+
+  /**
+   * Returns the limits of the depth.
+   *
+   * @param depth the maximum depth
+   * @return  the limits
+   */
+  public static SearchLimits depth(final int depth) {
+    return new SearchLimits(depth, 0, 0);
+  }
+
+  /**
+   * Returns the limits of the nodes.
+   *
+   * @param nodes the maximum number of the nodes
+   * @return  the limits
+   */
+  public static SearchLimits nodes(final long nodes) {
+    return new SearchLimits(0, nodes, 0);
+  }
+
+  /**
+   * Returns the limits of the time.
+   *
+   * @param timeMillis  the maximum time in milliseconds
+   * @return  the limits
+   */
+  public static SearchLimits timeMillis(final long timeMillis) {
+    return new SearchLimits(0, 0, timeMillis);
+  }
+
+  /**
+   * Returns the maximum depth.
+   *
+   * @return  the maximum depth, or 0 if the depth isn't limited
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns the maximum number of the nodes.
+   *
+   * @return  the maximum number of the nodes, or 0 if the nodes aren't limited
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the maximum time.
+   *
+   * @return  the maximum time in milliseconds, or 0 if the time isn't limited
+   */
+  public long getTimeMillis() {
+    return timeMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "depth " + depth + " nodes " + nodes + " time " + timeMillis;
+  }
+}
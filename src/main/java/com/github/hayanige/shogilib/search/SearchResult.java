@@ -0,0 +1,112 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Move;
+import java.util.List;
+
+/**
+ * The result of a search: the best move, its score and principal variation, and the statistics.
+ */
+public final class SearchResult {
+
+  private final Move bestMove;
+  private final int score;
+  private final int depth;
+  private final List<Move> pv;
+  private final long nodes;
+  private final long timeMillis;
+
+  SearchResult(final Move bestMove, final int score, final int depth, final List<Move> pv,
+      final long nodes, final long timeMillis) {
+    this.bestMove = bestMove;
+    this.score = score;
+    this.depth = depth;
+    this.pv = List.copyOf(pv);
+    this.nodes = nodes;
+    this.timeMillis = timeMillis;
+  }
+
+  /**
+   * Returns the best move, or {@link Move#MOVE_RESIGN} if there is no legal move.
+   *
+   * @return  the best move
+   */
+  public Move getBestMove() {
+    return bestMove;
+  }
+
+  /**
+   * Returns the score of the best move from the point of view of the side to move.
+   *
+   * @return  the score in centipawns, or a mate score
+   * @see Searcher#isMateScore(int)
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Returns the depth of the last completed iteration.
+   *
+   * @return  the depth
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns the principal variation starting from the best move.
+   *
+   * @return  the principal variation
+   */
+  public List<Move> getPv() {
+    return pv;
+  }
+
+  /**
+   * Returns the number of the searched nodes including the quiescence search.
+   *
+   * @return  the number of the nodes
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  public long getTimeMillis() {
+    return timeMillis;
+  }
+
+  /**
+   * Returns the number of the nodes searched per second.
+   *
+   * @return  nodes per second
+   */
+  public long getNps() {
+    return nodes * 1000 / Math.max(timeMillis, 1);
+  }
+
+  /**
+   * Returns the result in the format of the USI info command.
+   *
+   * @return  the USI info string
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("depth ").append(depth);
+    if (Searcher.isMateScore(score)) {
+      int plies = Searcher.MATE - Math.abs(score);
+      sb.append(" score mate ").append(score > 0 ? plies : -plies);
+    } else {
+      sb.append(" score cp ").append(score);
+    }
+    sb.append(" nodes ").append(nodes).append(" nps ").append(getNps())
+        .append(" time ").append(timeMillis);
+    if (!pv.isEmpty()) {
+      sb.append(" pv");
+      for (Move move : pv) {
+        sb.append(' ').append(move);
+      }
+    }
+    return sb.toString();
+  }
+}
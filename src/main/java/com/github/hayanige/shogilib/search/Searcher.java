@@ -0,0 +1,476 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.Piece;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.Square;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An alpha-beta searcher. It searches the best move by the iterative deepening of the principal
+ * variation search (PVS) with the quiescence search of captures.
+ * <p>
+ * The results of the searched nodes are stored in a {@link TranspositionTable}, which is used for
+ * the cutoffs and the move ordering. The moves are ordered by the best move in the table,
+ * MVV-LVA for captures, the killer moves and the history heuristic. The position is played with
+ * {@link Position#doMove(Move)} and {@link Position#undoMove()}, and restored after the search.
+ * <p>
+ * A searcher holds the buffers and the move ordering state, so it is not thread-safe except for
+ * {@link #stop()}. Use one searcher per thread.
+ */
+public final class Searcher {
+
+  /**
+   * The maximum ply of a search.
+   */
+  public static final int MAX_PLY = 128;
+
+  /**
+   * The score of being mated at the root. The score of mate in n plies is {@code MATE - n}.
+   */
+  public static final int MATE = 32000;
+
+  /**
+   * The minimum absolute value of the mate scores.
+   */
+  public static final int MATE_IN_MAX_PLY = MATE - MAX_PLY;
+
+  /**
+   * The score bigger than any score.
+   */
+  public static final int INFINITE = MATE + 1;
+
+  /**
+   * The score of a repetition.
+   */
+  public static final int DRAW = 0;
+
+  // the number of nodes between the checks of the limits
+  private static final int CHECK_INTERVAL = 1024;
+
+  // the scores for the move ordering
+  private static final int HASH_MOVE_SCORE = 1 << 30;
+  private static final int CAPTURE_SCORE = 1 << 24;
+  private static final int KILLER_SCORE = 1 << 22;
+  private static final int HISTORY_MAX = 1 << 20;
+
+  private static final int DEFAULT_HASH_SIZE_MB = 16;
+
+  private final Evaluator evaluator;
+  private final TranspositionTable table;
+
+  // buffers indexed by the ply
+  private final int[][] moves = new int[MAX_PLY + 1][Position.MAX_MOVES];
+  private final int[][] moveScores = new int[MAX_PLY + 1][Position.MAX_MOVES];
+  private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+  private final int[] pvLength = new int[MAX_PLY + 1];
+  private final int[][] killers = new int[MAX_PLY + 1][2];
+  private final long[] keys = new long[MAX_PLY + 1];
+
+  // the history heuristic indexed by the move without the promotion flag (drops are apart from
+  // the board moves by the drop flag)
+  private final int[] history = new int[1 << 15];
+
+  private Position position;
+  private long nodes;
+  private long nodeLimit;
+  private volatile SearchControl control = new SearchControl(SearchLimits.INFINITE, 0);
+
+  /**
+   * Creates a searcher with {@link MaterialEvaluator} and a transposition table of 16 MB.
+   */
+  public Searcher() {
+    this(new MaterialEvaluator());
+  }
+
+  /**
+   * Creates a searcher with the evaluation function and a transposition table of 16 MB.
+   *
+   * @param evaluator the evaluation function
+   */
+  public Searcher(final Evaluator evaluator) {
+    this(evaluator, new TranspositionTable(DEFAULT_HASH_SIZE_MB));
+  }
+
+  /**
+   * Creates a searcher with the evaluation function and the transposition table.
+   *
+   * @param evaluator the evaluation function
+   * @param table the transposition table, which may be shared with other searchers
+   */
+  public Searcher(final Evaluator evaluator, final TranspositionTable table) {
+    this.evaluator = evaluator;
+    this.table = table;
+  }
+
+  /**
+   * Returns the transposition table.
+   *
+   * @return  the transposition table
+   */
+  public TranspositionTable getTranspositionTable() {
+    return table;
+  }
+
+  /**
+   * Is the score a mate score?
+   *
+   * @param score the score
+   * @return  true if the score means mate
+   */
+  public static boolean isMateScore(final int score) {
+    return Math.abs(score) >= MATE_IN_MAX_PLY;
+  }
+
+  /**
+   * Searches the best move of the position within the limits. The position is restored after the
+   * search.
+   *
+   * @param position  the position
+   * @param limits  the limits of the search
+   * @return  the result of the last completed iteration
+   */
+  public SearchResult search(final Position position, final SearchLimits limits) {
+    long start = System.currentTimeMillis();
+    table.newSearch();
+    SearchResult result = search(position, limits, new SearchControl(limits, start),
+        limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE, 1);
+    return new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(),
+        result.getPv(), nodes, System.currentTimeMillis() - start);
+  }
+
+  // Searches with the control shared by the searchers of the search. The node limit is the exact
+  // limit of this searcher, and the iterative deepening starts at the start depth.
+  SearchResult search(final Position position, final SearchLimits limits,
+      final SearchControl control, final long nodeLimit, final int startDepth) {
+    this.position = position;
+    this.control = control;
+    this.nodeLimit = nodeLimit;
+    nodes = 0;
+    for (int[] killer : killers) {
+      killer[0] = 0;
+      killer[1] = 0;
+    }
+    for (int i = 0; i < history.length; i++) {
+      history[i] /= 8;
+    }
+
+    int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY) : MAX_PLY;
+    int[] rootMoves = moves[0];
+    if (position.generateLegalMoves(rootMoves) == 0) {
+      return new SearchResult(Move.MOVE_RESIGN, -MATE, 0, List.of(), 0, 0);
+    }
+
+    int bestMove = rootMoves[0];
+    int bestScore = -INFINITE;
+    int completedDepth = 0;
+    List<Move> bestPv = List.of(Move.valueOf(bestMove));
+    for (int depth = Math.min(startDepth, maxDepth); depth <= maxDepth; depth++) {
+      int score = search(depth, 0, -INFINITE, INFINITE, bestMove);
+      if (control.isStopped()) {
+        break;
+      }
+      bestMove = pv[0][0];
+      bestScore = score;
+      completedDepth = depth;
+      bestPv = getPv();
+      if (isMateScore(score) && MATE - Math.abs(score) <= depth) {
+        // no need to search deeper
+        break;
+      }
+    }
+    return new SearchResult(Move.valueOf(bestMove), bestScore, completedDepth, bestPv, nodes, 0);
+  }
+
+  /**
+   * Stops the search. It can be called from any thread.
+   */
+  public void stop() {
+    control.stop();
+  }
+
+  /**
+   * Returns the number of the nodes searched by the current or the last search.
+   *
+   * @return  the number of the nodes
+   */
+  public long getNodes() {
+    return nodes;
+  }
+
+  private List<Move> getPv() {
+    List<Move> list = new ArrayList<>(pvLength[0]);
+    for (int i = 0; i < pvLength[0]; i++) {
+      list.add(Move.valueOf(pv[0][i]));
+    }
+    return list;
+  }
+
+  private int search(int depth, final int ply, int alpha, int beta, int hashMove) {
+    pvLength[ply] = 0;
+    if (depth <= 0) {
+      return quiesce(ply, alpha, beta);
+    }
+    if (countNode()) {
+      return 0;
+    }
+    long key = position.getZobristHash();
+    keys[ply] = key;
+    if (ply > 0) {
+      if (isRepeated(ply)) {
+        return DRAW;
+      }
+      // mate distance pruning
+      alpha = Math.max(alpha, -MATE + ply);
+      beta = Math.min(beta, MATE - ply - 1);
+      if (alpha >= beta) {
+        return alpha;
+      }
+    }
+    if (ply >= MAX_PLY) {
+      return evaluator.evaluate(position);
+    }
+
+    // the cutoff by the transposition table except for the PV nodes
+    boolean pvNode = beta - alpha > 1;
+    long entry = table.probe(key);
+    if (entry != 0) {
+      if (ply > 0) {
+        hashMove = TranspositionTable.getMove(entry);
+      }
+      int score = scoreFromTable(TranspositionTable.getScore(entry), ply);
+      int bound = TranspositionTable.getBound(entry);
+      if (!pvNode && TranspositionTable.getDepth(entry) >= depth
+          && (bound == TranspositionTable.BOUND_EXACT
+          || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+          || (bound == TranspositionTable.BOUND_UPPER && score <= alpha))) {
+        return score;
+      }
+    }
+
+    boolean inCheck = position.isKingAttacked();
+    if (inCheck) {
+      // check extension
+      depth++;
+    }
+    int[] moveList = moves[ply];
+    int size = position.generateLegalMoves(moveList);
+    if (size == 0) {
+      return -MATE + ply;
+    }
+    scoreMoves(ply, size, hashMove, false);
+
+    int originalAlpha = alpha;
+    int bestScore = -INFINITE;
+    int bestMove = 0;
+    for (int i = 0; i < size; i++) {
+      int move = pickMove(ply, i, size);
+      position.doMove(Move.valueOf(move));
+      int score;
+      if (i == 0) {
+        score = -search(depth - 1, ply + 1, -beta, -alpha, 0);
+      } else {
+        // the null window search to prove the move is worse than the first one
+        score = -search(depth - 1, ply + 1, -alpha - 1, -alpha, 0);
+        if (score > alpha && score < beta) {
+          score = -search(depth - 1, ply + 1, -beta, -alpha, 0);
+        }
+      }
+      position.undoMove();
+      if (control.isStopped()) {
+        return 0;
+      }
+
+      if (score > bestScore) {
+        bestScore = score;
+        bestMove = move;
+        if (score > alpha) {
+          alpha = score;
+          updatePv(ply, move);
+          if (alpha >= beta) {
+            if (!isCapture(move)) {
+              updateKillers(ply, move);
+              updateHistory(move, depth);
+            }
+            break;
+          }
+        }
+      }
+    }
+
+    int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+        : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT
+        : TranspositionTable.BOUND_UPPER;
+    table.store(key, bestMove, scoreToTable(bestScore, ply), depth, bound);
+    return bestScore;
+  }
+
+  private int quiesce(final int ply, int alpha, final int beta) {
+    pvLength[ply] = 0;
+    if (countNode()) {
+      return 0;
+    }
+    if (ply >= MAX_PLY) {
+      return evaluator.evaluate(position);
+    }
+
+    // all the evasions are searched in check, and only the captures are searched otherwise
+    boolean inCheck = position.isKingAttacked();
+    int[] moveList = moves[ply];
+    int size = position.generateLegalMoves(moveList);
+    if (size == 0) {
+      return -MATE + ply;
+    }
+    int bestScore = -INFINITE;
+    if (!inCheck) {
+      bestScore = evaluator.evaluate(position);
+      if (bestScore >= beta) {
+        return bestScore;
+      }
+      alpha = Math.max(alpha, bestScore);
+    }
+    scoreMoves(ply, size, 0, !inCheck);
+
+    for (int i = 0; i < size; i++) {
+      int move = pickMove(ply, i, size);
+      if (!inCheck && !isCapture(move)) {
+        // the remaining moves are not captures
+        break;
+      }
+      position.doMove(Move.valueOf(move));
+      int score = -quiesce(ply + 1, -beta, -alpha);
+      position.undoMove();
+      if (control.isStopped()) {
+        return 0;
+      }
+
+      if (score > bestScore) {
+        bestScore = score;
+        if (score > alpha) {
+          alpha = score;
+          updatePv(ply, move);
+          if (alpha >= beta) {
+            break;
+          }
+        }
+      }
+    }
+    return bestScore;
+  }
+
+  // converts the mate score relative to the root into the one relative to the position
+  private static int scoreToTable(final int score, final int ply) {
+    if (score >= MATE_IN_MAX_PLY) {
+      return score + ply;
+    } else if (score <= -MATE_IN_MAX_PLY) {
+      return score - ply;
+    }
+    return score;
+  }
+
+  private static int scoreFromTable(final int score, final int ply) {
+    if (score >= MATE_IN_MAX_PLY) {
+      return score - ply;
+    } else if (score <= -MATE_IN_MAX_PLY) {
+      return score + ply;
+    }
+    return score;
+  }
+
+  // counts the node and returns true if the search has to stop
+  private boolean countNode() {
+    nodes++;
+    if (nodes % CHECK_INTERVAL == 0) {
+      control.addNodes(CHECK_INTERVAL);
+    }
+    if (nodes >= nodeLimit) {
+      control.stop();
+    }
+    return control.isStopped();
+  }
+
+  // Is the position the same as a position of the same side in the search?
+  private boolean isRepeated(final int ply) {
+    for (int i = ply - 4; i >= 0; i -= 2) {
+      if (keys[i] == keys[ply]) {
+        return true;
+      }
+    }
+    return position.isRepetition();
+  }
+
+  private boolean isCapture(final int move) {
+    Move m = Move.valueOf(move);
+    return !m.isDrop() && position.getPiece(m.getToSquare()) != Piece.NO_PIECE;
+  }
+
+  private void scoreMoves(final int ply, final int size, final int hashMove,
+      final boolean capturesOnly) {
+    int[] moveList = moves[ply];
+    int[] scores = moveScores[ply];
+    for (int i = 0; i < size; i++) {
+      int move = moveList[i];
+      Move m = Move.valueOf(move);
+      if (move == hashMove) {
+        scores[i] = HASH_MOVE_SCORE;
+      } else if (isCapture(move)) {
+        // MVV-LVA: the most valuable victim and the least valuable attacker first
+        Square to = m.getToSquare();
+        scores[i] = CAPTURE_SCORE
+            + 16 * MaterialEvaluator.getValue(position.getPiece(to).getPieceType())
+            - MaterialEvaluator.getValue(position.getPiece(m.getFromSquare()).getPieceType()) / 16;
+      } else if (capturesOnly) {
+        scores[i] = -1;
+      } else if (move == killers[ply][0]) {
+        scores[i] = KILLER_SCORE + 1;
+      } else if (move == killers[ply][1]) {
+        scores[i] = KILLER_SCORE;
+      } else {
+        scores[i] = history[move & 0x7fff];
+      }
+    }
+  }
+
+  // selects the best move of the rest by the selection sort
+  private int pickMove(final int ply, final int index, final int size) {
+    int[] moveList = moves[ply];
+    int[] scores = moveScores[ply];
+    int best = index;
+    for (int i = index + 1; i < size; i++) {
+      if (scores[i] > scores[best]) {
+        best = i;
+      }
+    }
+    int move = moveList[best];
+    int score = scores[best];
+    moveList[best] = moveList[index];
+    scores[best] = scores[index];
+    moveList[index] = move;
+    scores[index] = score;
+    return move;
+  }
+
+  private void updatePv(final int ply, final int move) {
+    pv[ply][0] = move;
+    System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+    pvLength[ply] = pvLength[ply + 1] + 1;
+  }
+
+  private void updateKillers(final int ply, final int move) {
+    if (killers[ply][0] != move) {
+      killers[ply][1] = killers[ply][0];
+      killers[ply][0] = move;
+    }
+  }
+
+  private void updateHistory(final int move, final int depth) {
+    int index = move & 0x7fff;
+    history[index] += depth * depth;
+    if (history[index] >= HISTORY_MAX) {
+      for (int i = 0; i < history.length; i++) {
+        history[i] /= 2;
+      }
+    }
+  }
+}
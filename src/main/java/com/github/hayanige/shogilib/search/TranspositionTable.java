@@ -0,0 +1,215 @@
+package com.github.hayanige.shogilib.search;
+
+import java.util.Arrays;
+
+/**
+ * A transposition table keyed by the Zobrist hash of a position. It can be shared by several
+ * search threads without any lock.
+ * <p>
+ * The table is a {@code long[]} divided into buckets of 4 entries (64 bytes). An entry consists
+ * of two longs, the key XORed with the data and the data. A probe verifies the whole key by
+ * XORing them again, so an entry whose two longs have been written by different threads at the
+ * same time is simply treated as a miss. (It is called the lockless hashing by Hyatt and Mann.)
+ * <p>
+ * The data packs the following fields in a long.
+ * <ul>
+ *   <li>bit0-15: the 16-bit representation of the best move</li>
+ *   <li>bit16-31: the score</li>
+ *   <li>bit32-39: the depth</li>
+ *   <li>bit40-41: the bound</li>
+ *   <li>bit42-47: the generation of the search</li>
+ * </ul>
+ */
+public final class TranspositionTable {
+
+  /**
+   * The bound of an upper bound score (fail-low).
+   */
+  public static final int BOUND_UPPER = 1;
+
+  /**
+   * The bound of a lower bound score (fail-high).
+   */
+  public static final int BOUND_LOWER = 2;
+
+  /**
+   * The bound of an exact score.
+   */
+  public static final int BOUND_EXACT = 3;
+
+  private static final int ENTRY_LONGS = 2;
+  private static final int BUCKET_ENTRIES = 4;
+  private static final int BUCKET_LONGS = ENTRY_LONGS * BUCKET_ENTRIES;
+  private static final int BUCKET_BYTES = BUCKET_LONGS * Long.BYTES;
+  private static final int MAX_BUCKETS = 1 << 27;  // 8 GB
+  private static final int GENERATION_MASK = 0x3f;
+
+  private final long[] table;
+  private final int bucketMask;
+  private volatile int generation;
+
+  /**
+   * Creates a table of the given size. The number of the buckets is the largest power of two
+   * fitting in the size.
+   *
+   * @param sizeMb  the size in megabytes
+   */
+  public TranspositionTable(final int sizeMb) {
+    if (sizeMb <= 0) {
+      throw new IllegalArgumentException("The size must be positive: " + sizeMb);
+    }
+    long buckets = Long.highestOneBit((long) sizeMb * 1024 * 1024 / BUCKET_BYTES);
+    buckets = Math.min(buckets, MAX_BUCKETS);
+    table = new long[(int) buckets * BUCKET_LONGS];
+    bucketMask = (int) buckets - 1;
+  }
+
+  /**
+   * Returns the size of the table in bytes.
+   *
+   * @return  the size in bytes
+   */
+  public long getSizeBytes() {
+    return (long) table.length * Long.BYTES;
+  }
+
+  /**
+   * Starts a new search. The entries of the older searches are replaced preferentially.
+   */
+  public void newSearch() {
+    generation = (generation + 1) & GENERATION_MASK;
+  }
+
+  /**
+   * Removes all the entries.
+   */
+  public void clear() {
+    Arrays.fill(table, 0L);
+    generation = 0;
+  }
+
+  /**
+   * Probes the entry of the key.
+   *
+   * @param key the Zobrist hash of the position
+   * @return  the data of the entry, or 0 if the entry isn't found
+   */
+  public long probe(final long key) {
+    int bucket = getBucket(key);
+    for (int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+      long data = table[i + 1];
+      if ((table[i] ^ data) == key && data != 0) {
+        return data;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Stores an entry. If the bucket is full, the entry of the shallowest and oldest search is
+   * replaced.
+   *
+   * @param key the Zobrist hash of the position
+   * @param move  the 16-bit representation of the best move, or 0 if unknown
+   * @param score the score
+   * @param depth the depth of the search
+   * @param bound the bound of the score
+   */
+  public void store(final long key, int move, final int score, final int depth,
+      final int bound) {
+    assert bound >= BOUND_UPPER && bound <= BOUND_EXACT;
+    int bucket = getBucket(key);
+    int current = generation;
+    int replace = bucket;
+    int replaceValue = Integer.MAX_VALUE;
+    for (int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+      long data = table[i + 1];
+      if ((table[i] ^ data) == key || data == 0) {
+        if (move == 0 && data != 0) {
+          // keep the best move of the previous search
+          move = getMove(data);
+        }
+        replace = i;
+        break;
+      }
+      int age = (current - getGeneration(data)) & GENERATION_MASK;
+      int value = getDepth(data) - 8 * age;
+      if (value < replaceValue) {
+        replace = i;
+        replaceValue = value;
+      }
+    }
+    long data = (move & 0xffffL)
+        | ((score & 0xffffL) << 16)
+        | ((long) Math.min(Math.max(depth, 0), 0xff) << 32)
+        | ((long) bound << 40)
+        | ((long) current << 42);
+    table[replace] = key ^ data;
+    table[replace + 1] = data;
+  }
+
+  /**
+   * Returns the approximate usage of the table by the current search in permille.
+   *
+   * @return  the usage in permille
+   */
+  public int getHashfull() {
+    int samples = Math.min(1000, (bucketMask + 1) * BUCKET_ENTRIES);
+    int count = 0;
+    for (int i = 0; i < samples; i++) {
+      long data = table[i * ENTRY_LONGS + 1];
+      if (data != 0 && getGeneration(data) == generation) {
+        count++;
+      }
+    }
+    return count * 1000 / samples;
+  }
+
+  /**
+   * Returns the 16-bit representation of the best move in the data.
+   *
+   * @param data  the data returned by {@link #probe(long)}
+   * @return  the move, or 0 if unknown
+   */
+  public static int getMove(final long data) {
+    return (int) (data & 0xffff);
+  }
+
+  /**
+   * Returns the score in the data.
+   *
+   * @param data  the data returned by {@link #probe(long)}
+   * @return  the score
+   */
+  public static int getScore(final long data) {
+    return (short) (data >>> 16);
+  }
+
+  /**
+   * Returns the depth in the data.
+   *
+   * @param data  the data returned by {@link #probe(long)}
+   * @return  the depth
+   */
+  public static int getDepth(final long data) {
+    return (int) ((data >>> 32) & 0xff);
+  }
+
+  /**
+   * Returns the bound in the data.
+   *
+   * @param data  the data returned by {@link #probe(long)}
+   * @return  the bound
+   */
+  public static int getBound(final long data) {
+    return (int) ((data >>> 40) & 0x3);
+  }
+
+  private static int getGeneration(final long data) {
+    return (int) ((data >>> 42) & GENERATION_MASK);
+  }
+
+  private int getBucket(final long key) {
+    return ((int) key & bucketMask) * BUCKET_LONGS;
+  }
+}
@@ -31,6 +31,12 @@ public class TestBasicModel {
     Move move3 = Move.makeMoveDrop(PAWN, SQ_53);
     Assertions.assertFalse(move3.isPromote());
     Assertions.assertTrue(move3.isDrop());
+
+    // moves are interned
+    Assertions.assertSame(move1, Move.makeMoveUSI("7g7f"));
+    Assertions.assertSame(move2, Move.valueOf(move2.toInt()));
+    Assertions.assertSame(move3, Move.makeMoveUSI("P*5c"));
+    Assertions.assertSame(Move.MOVE_NULL, Move.valueOf(Move.MOVE_NULL.toInt()));
   }
 
   @Test
@@ -60,6 +66,9 @@ public class TestBasicModel {
     Assertions.assertEquals(HORSE, B_HORSE.getPieceType());
     Assertions.assertEquals(BISHOP, B_HORSE.getRawType());
     Assertions.assertEquals(W_KNIGHT, KNIGHT.getColoredPiece(WHITE));
+    Assertions.assertEquals(18, PAWN.getFullSetCount());
+    Assertions.assertEquals(4, GOLD.getFullSetCount());
+    Assertions.assertEquals(0, DRAGON.getFullSetCount());
   }
 
   @Test
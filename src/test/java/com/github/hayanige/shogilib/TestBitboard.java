@@ -1,12 +1,22 @@
 package com.github.hayanige.shogilib;
 
+import static com.github.hayanige.shogilib.Square.SQ_11;
+import static com.github.hayanige.shogilib.Square.SQ_15;
+import static com.github.hayanige.shogilib.Square.SQ_55;
 import static com.github.hayanige.shogilib.Square.SQ_76;
+import static com.github.hayanige.shogilib.Square.SQ_95;
+import static com.github.hayanige.shogilib.Square.SQ_98;
+import static com.github.hayanige.shogilib.Square.SQ_99;
 import static com.github.hayanige.shogilib.bitboard.Bitboard.and;
+import static com.github.hayanige.shogilib.bitboard.Bitboard.or;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.ALL_BB;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.FILE7_BB;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.RANK6_BB;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.ZERO_BB;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getFileBitboard;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getLanceSlidingEffectBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getRankBitboard;
+import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getRookSlidingEffectBitboard;
 import static com.github.hayanige.shogilib.bitboard.BitboardConstants.getSquareBitboard;
 
 import com.github.hayanige.shogilib.bitboard.Bitboard;
@@ -32,4 +42,44 @@ public class TestBitboard {
     }
     Assertions.assertTrue(bitboard.isZero());
   }
+
+  @Test
+  public void testInPlaceOperations() {
+    Bitboard bitboard = new Bitboard().set(FILE7_BB);
+    Assertions.assertEquals(FILE7_BB, bitboard);
+    Assertions.assertTrue(bitboard.intersects(RANK6_BB));
+    Assertions.assertTrue(bitboard.clear().isZero());
+
+    bitboard.orAnd(FILE7_BB, RANK6_BB).orAnd(getSquareBitboard(SQ_11), ALL_BB);
+    Assertions.assertEquals(or(getSquareBitboard(SQ_76), getSquareBitboard(SQ_11)), bitboard);
+    Assertions.assertFalse(bitboard.intersects(getSquareBitboard(SQ_55)));
+    Assertions.assertEquals(and(bitboard, FILE7_BB).merge(), bitboard.merge(FILE7_BB));
+  }
+
+  @Test
+  public void testLanceSlidingEffect() {
+    Bitboard[] occupiedList = new Bitboard[] {
+        ZERO_BB, ALL_BB, or(getSquareBitboard(SQ_95), getSquareBitboard(SQ_15)), FILE7_BB, RANK6_BB
+    };
+    for (Bitboard occupied : occupiedList) {
+      for (Color color : Color.getColors()) {
+        for (Square square : Square.getSquares()) {
+          // the lance effects are the rook effects in the same file in front of the lance
+          Bitboard expected = new Bitboard();
+          Bitboard rookEffects = and(getRookSlidingEffectBitboard(square, occupied),
+              getFileBitboard(square.getFile()));
+          while (rookEffects.hasNext()) {
+            Square to = rookEffects.getNextSquare();
+            int diff = to.getRank().ordinal() - square.getRank().ordinal();
+            if (color == Color.BLACK ? diff < 0 : diff > 0) {
+              expected.or(getSquareBitboard(to));
+            }
+          }
+          Assertions.assertEquals(expected, getLanceSlidingEffectBitboard(color, square, occupied));
+        }
+      }
+    }
+    Assertions.assertEquals(getSquareBitboard(SQ_98),
+        getLanceSlidingEffectBitboard(Color.BLACK, SQ_99, ALL_BB));
+  }
 }
@@ -3,8 +3,10 @@ package com.github.hayanige.shogilib;
 import static com.github.hayanige.shogilib.Perft.perftWithTime;
 
 import com.github.hayanige.shogilib.Perft.PerftResult;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -194,6 +196,163 @@ public class TestGenerateMoves {
     Assertions.assertArrayEquals(expectedMoves, moves.toArray());
   }
 
+  @Test
+  public void testGenerateMovesIntoBuffer() {
+    int[] buffer = new int[Position.MAX_MOVES];
+    for (String sfen : new String[] { Position.HIRATE_SFEN, MAX_MOVES_POSITION_SFEN }) {
+      Position position = Position.createPositionFromSfen(sfen);
+
+      List<Move> legalMoves = position.getLegalMoves();
+      int size = position.generateLegalMoves(buffer);
+      Assertions.assertEquals(legalMoves.size(), size);
+      for (int i = 0; i < size; i++) {
+        Assertions.assertEquals(legalMoves.get(i), Move.valueOf(buffer[i]));
+        Assertions.assertEquals(legalMoves.get(i).toInt(), buffer[i]);
+      }
+
+      List<Move> pseudoLegalMoves = position.getPseudoLegalMoves();
+      size = position.generatePseudoLegalMoves(buffer);
+      Assertions.assertEquals(pseudoLegalMoves.size(), size);
+      for (int i = 0; i < size; i++) {
+        Assertions.assertEquals(pseudoLegalMoves.get(i), Move.valueOf(buffer[i]));
+      }
+    }
+  }
+
+  @Test
+  public void testEvasionMoves() {
+    String[] sfens = new String[] {
+        "4k4/9/9/9/4r4/9/9/9/4K4 b GSP 1",  // interpositions by drops
+        "4k4/9/9/9/4r4/1b7/9/9/4K4 b G 1",  // double check
+        "4k3B/9/9/9/b3r4/9/9/3S5/4K4 b P 1",  // a capture and a pinned piece
+    };
+    for (String sfen : sfens) {
+      Position position = Position.createPositionFromSfen(sfen);
+      Assertions.assertTrue(position.isKingAttacked());
+
+      // moves that don't leave the king checked
+      List<Move> expectedMoves = new ArrayList<>();
+      for (Move move : position.getPseudoLegalMoves()) {
+        position.doMove(move);
+        position.doMove(Move.MOVE_NULL);
+        if (!position.isKingAttacked()) {
+          expectedMoves.add(move);
+        }
+        position.undoMove();
+        position.undoMove();
+      }
+
+      List<Move> moves = position.getLegalMoves();
+      Collections.sort(expectedMoves);
+      Collections.sort(moves);
+      Assertions.assertEquals(expectedMoves, moves);
+    }
+  }
+
+  @Test
+  public void testCheckMoves() {
+    String[] sfens = new String[] {
+        "4k4/9/9/9/9/9/9/9/4K4 b RBGSNLP 1",  // drops
+        "4k4/9/4S4/9/4R4/9/9/9/4K4 b - 1",  // discovered checks
+        "4k4/4p4/9/2B6/9/4L4/9/9/4K4 b - 1",  // a bishop checking by promotion and a lance
+        "4k4/9/4P4/9/9/9/9/4r4/4K4 b G 1",  // evasions checking the enemy king
+        MAX_MOVES_POSITION_SFEN,
+    };
+    int[] buffer = new int[Position.MAX_MOVES];
+    for (String sfen : sfens) {
+      assertCheckMoves(Position.createPositionFromSfen(sfen), buffer);
+    }
+
+    Random random = new Random(0);
+    for (int game = 0; game < 20; game++) {
+      Position position = Position.createHiratePosition();
+      for (int ply = 0; ply < 200; ply++) {
+        assertCheckMoves(position, buffer);
+        List<Move> moves = position.getLegalMoves();
+        if (moves.isEmpty()) {
+          break;
+        }
+        position.doMove(moves.get(random.nextInt(moves.size())));
+      }
+    }
+  }
+
+  // the check moves must be the legal moves checking the enemy king
+  private static void assertCheckMoves(final Position position, final int[] buffer) {
+    List<Move> expectedMoves = new ArrayList<>();
+    for (Move move : position.getLegalMoves()) {
+      position.doMove(move);
+      if (position.isKingAttacked()) {
+        expectedMoves.add(move);
+      }
+      position.undoMove();
+    }
+
+    int size = position.generateCheckMoves(buffer);
+    List<Move> moves = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      moves.add(Move.valueOf(buffer[i]));
+    }
+    Assertions.assertEquals(expectedMoves, moves, position.getSfen());
+  }
+
+  @Test
+  public void testPerpetualCheck() {
+    // the rook checks the king on the first rank and the second rank by turns
+    Position position = Position.createPositionFromSfen("4k4/9/9/9/9/9/9/9/4K3R b - 1");
+    String[] cycle = new String[] {"1i1a", "5a5b", "1a1b", "5b5a", "1b1a", "5a5b", "1a1b",
+        "5b5a", "1b1a", "5a5b", "1a1b", "5b5a"};
+    for (String usi : cycle) {
+      assertPerpetualCheckFilter(position);
+      position.doMove(Move.makeMoveUSI(usi));
+    }
+    assertPerpetualCheckFilter(position);
+
+    // the fourth appearance of the same position by a check is removed
+    List<Move> moves = position.getLegalMoves();
+    Assertions.assertFalse(moves.contains(Move.makeMoveUSI("1b1a")));
+    Assertions.assertTrue(moves.contains(Move.makeMoveUSI("1b1c")));
+  }
+
+  // the legal moves must be the legal moves without the history except the perpetual checks
+  private static void assertPerpetualCheckFilter(final Position position) {
+    List<Move> expectedMoves = new ArrayList<>();
+    for (Move move : Position.createPositionFromSfen(position.getSfen()).getLegalMoves()) {
+      position.doMove(move);
+      if (!position.isRepetition() || !position.isKingAttacked()) {
+        expectedMoves.add(move);
+      }
+      position.undoMove();
+    }
+
+    List<Move> moves = position.getLegalMoves();
+    Collections.sort(expectedMoves);
+    Collections.sort(moves);
+    Assertions.assertEquals(expectedMoves, moves, position.getSfen());
+  }
+
+  @Test
+  public void testDropPawnMate() {
+    Move dropPawn = Move.makeMoveUSI("P*5b");
+
+    // the king can't escape and the pawn is protected
+    Position position = Position.createPositionFromSfen("3lkl3/9/4G4/9/9/9/9/9/4K4 b P 1");
+    Assertions.assertTrue(position.getPseudoLegalMoves().contains(dropPawn));
+    Assertions.assertFalse(position.getLegalMoves().contains(dropPawn));
+
+    // the king can escape to 4a
+    position = Position.createPositionFromSfen("3lk4/9/4G4/9/9/9/9/9/4K4 b P 1");
+    Assertions.assertTrue(position.getLegalMoves().contains(dropPawn));
+
+    // the gold can capture the pawn
+    position = Position.createPositionFromSfen("3lkl3/3g5/4G4/9/9/9/9/9/4K4 b P 1");
+    Assertions.assertTrue(position.getLegalMoves().contains(dropPawn));
+
+    // the gold can't capture the pawn because it is pinned by the bishop
+    position = Position.createPositionFromSfen("3lkl3/3g5/4G4/1B7/9/9/9/9/4K4 b P 1");
+    Assertions.assertFalse(position.getLegalMoves().contains(dropPawn));
+  }
+
   @Test
   public void perftMaxMovesDepth1() {
     Position position = Position.createPositionFromSfen(MAX_MOVES_POSITION_SFEN);
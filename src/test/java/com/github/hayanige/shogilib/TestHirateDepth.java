@@ -1,5 +1,7 @@
 package com.github.hayanige.shogilib;
 
+import static com.github.hayanige.shogilib.Perft.hashPerftWithTime;
+import static com.github.hayanige.shogilib.Perft.parallelPerftWithTime;
 import static com.github.hayanige.shogilib.Perft.perftWithTime;
 
 import com.github.hayanige.shogilib.Perft.PerftResult;
@@ -79,6 +81,34 @@ public class TestHirateDepth {
     Assertions.assertEquals(0, result.getCheckmates());
   }
 
+  @Test
+  public void testBulkCountingHirateDepth5() {
+    Position position = Position.createHiratePosition();
+    Assertions.assertEquals(19861490, perftWithTime(position, 5, false).getNodes());
+    Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+  }
+
+  @Test
+  public void testParallelHirateDepth5() {
+    Position position = Position.createHiratePosition();
+    PerftResult result = parallelPerftWithTime(position, 5, true);
+    Assertions.assertEquals(19861490, result.getNodes());
+    Assertions.assertEquals(113680, result.getCaptures());
+    Assertions.assertEquals(57214, result.getPromotions());
+    Assertions.assertEquals(71434, result.getChecks());
+    Assertions.assertEquals(0, result.getCheckmates());
+    Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+  }
+
+  @Test
+  public void testHashHirateDepth5() {
+    Position position = Position.createHiratePosition();
+    Assertions.assertEquals(19861490, hashPerftWithTime(position, 5, 16).getNodes());
+    // a small table causing many replacements must give the same result
+    Assertions.assertEquals(19861490, hashPerftWithTime(position, 5, 0).getNodes());
+    Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+  }
+
   @Disabled
   @Test
   public void testHirateDepth7() {
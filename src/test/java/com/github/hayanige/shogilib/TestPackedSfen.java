@@ -0,0 +1,117 @@
+package com.github.hayanige.shogilib;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestPackedSfen {
+
+  @Test
+  public void testHirate() {
+    Position position = Position.createHiratePosition();
+    byte[] packed = PackedSfen.encode(position);
+    Assertions.assertEquals(PackedSfen.BYTES, packed.length);
+    Position decoded = PackedSfen.decode(packed, 0);
+    Assertions.assertEquals(Position.HIRATE_SFEN, decoded.getSfen());
+    Assertions.assertEquals(position.getZobristHash(), decoded.getZobristHash());
+  }
+
+  @Test
+  public void testYaneuraOuCompatibility() {
+    // the packed SFENs written by YaneuraOu, whose hands have the gold after the rook
+    String[] sfens = {
+        "lns1kgsnl/9/ppppppppp/9/9/9/PPPPPPPPP/9/LNSGK1SNL b RBGrbg 1",
+        "lns1kgsnl/9/pppp+Ppppp/9/9/9/PPPP1PPPP/9/LNSGK1SNL w RBGrbgp 1",
+    };
+    int[][] expected = {
+        {
+            0x58, 0xa4, 0x51, 0x22, 0x0c, 0xab, 0x44, 0x58, 0x4e, 0x89, 0x70, 0xbc, 0x12, 0x81,
+            0x44, 0x20, 0x11, 0x9e, 0x53, 0x22, 0x1c, 0xab, 0x44, 0x58, 0x46, 0x89, 0x30, 0x3c,
+            0x3e, 0xe7, 0xf9, 0xbd
+        },
+        {
+            0x59, 0xa4, 0x51, 0x22, 0x0c, 0xab, 0x44, 0x58, 0x4e, 0x89, 0x70, 0xbc, 0x12, 0x81,
+            0x02, 0x24, 0xc2, 0x73, 0x4a, 0x84, 0x63, 0x95, 0x08, 0xcb, 0x28, 0x11, 0x86, 0xc7,
+            0xe7, 0xf0, 0xf9, 0xbd
+        },
+    };
+    for (int i = 0; i < sfens.length; i++) {
+      byte[] packed = new byte[PackedSfen.BYTES];
+      for (int j = 0; j < packed.length; j++) {
+        packed[j] = (byte) expected[i][j];
+      }
+      Assertions.assertArrayEquals(packed,
+          PackedSfen.encode(Position.createPositionFromSfen(sfens[i])));
+      Assertions.assertEquals(sfens[i], PackedSfen.decode(packed, 0).getSfen());
+    }
+  }
+
+  @Test
+  public void testEncodeWithOffset() {
+    Position position = Position.createPositionFromSfen(
+        "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1");
+    byte[] packed = new byte[PackedSfen.BYTES * 2];
+    packed[0] = 1;
+    packed[packed.length - 1] = -1;
+    PackedSfen.encode(position, packed, PackedSfen.BYTES);
+    Assertions.assertEquals(1, packed[0]);
+    Assertions.assertEquals(position.getSfen(), PackedSfen.decode(packed, PackedSfen.BYTES).getSfen());
+  }
+
+  @Test
+  public void testRandomGame() {
+    Random random = new Random(15);
+    Position position = Position.createHiratePosition();
+    byte[] packed = new byte[PackedSfen.BYTES];
+    while (!position.isMated() && position.getMoveCounter() < 300) {
+      List<Move> moves = position.getLegalMoves();
+      position.doMove(moves.get(random.nextInt(moves.size())));
+
+      PackedSfen.encode(position, packed, 0);
+      Position decoded = PackedSfen.decode(packed, 0);
+      String sfen = position.getSfen();
+      Assertions.assertEquals(sfen.substring(0, sfen.lastIndexOf(' ')) + " 1", decoded.getSfen());
+      Assertions.assertEquals(position.getZobristHash(), decoded.getZobristHash());
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    // a position without the full set of pieces can't be encoded
+    Position position = Position.createPositionFromSfen("4k4/9/9/9/9/9/9/9/4K4 b - 1");
+    Assertions.assertThrows(IllegalArgumentException.class, () -> PackedSfen.encode(position));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PackedSfen.decode(new byte[PackedSfen.BYTES - 1], 0));
+
+    // both king squares are 0
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PackedSfen.decode(new byte[PackedSfen.BYTES], 0));
+
+    // the board ends with the code of a pawn at the last bit, without its flags
+    StringBuilder bits = new StringBuilder("0" + "0000000" + "1000000");
+    bits.append("0".repeat(27)).append("1000".repeat(49)).append("11111100".repeat(2))
+        .append("10");
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PackedSfen.decode(toBytes(bits), 0));
+
+    // 54 pawns in the hand of black on the empty board
+    StringBuilder handBits = new StringBuilder("0" + "0000000" + "1000000");
+    handBits.append("0".repeat(79)).append("000".repeat(54));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> PackedSfen.decode(toBytes(handBits), 0));
+  }
+
+  // packs the bits written from the least significant bit of the first byte
+  private static byte[] toBytes(final CharSequence bits) {
+    Assertions.assertEquals(PackedSfen.BYTES * 8, bits.length());
+    byte[] packed = new byte[PackedSfen.BYTES];
+    for (int i = 0; i < bits.length(); i++) {
+      if (bits.charAt(i) == '1') {
+        packed[i / 8] |= (byte) (1 << (i % 8));
+      }
+    }
+    return packed;
+  }
+}
@@ -57,6 +57,24 @@ public class TestPosition {
     Assertions.assertEquals(Move.MOVE_NONE, position.undoMove());
   }
 
+  @Test
+  public void testUndoCapture() {
+    Position position = Position.createHiratePosition();
+    position.doMove(Move.makeMove(Square.SQ_77, Square.SQ_76));
+    position.doMove(Move.makeMove(Square.SQ_33, Square.SQ_34));
+    String sfen = position.getSfen();
+    long hash = position.getZobristHash();
+
+    position.doMove(Move.makeMovePromote(Square.SQ_88, Square.SQ_22));
+    Assertions.assertEquals(Piece.W_BISHOP, position.getLastCapturedPiece());
+    Assertions.assertEquals(1, position.getNumberOfPieceInHand(Color.BLACK, PieceType.BISHOP));
+
+    position.undoMove();
+    Assertions.assertEquals(Piece.NO_PIECE, position.getLastCapturedPiece());
+    Assertions.assertEquals(sfen, position.getSfen());
+    Assertions.assertEquals(hash, position.getZobristHash());
+  }
+
   @Test
   public void testNullMove() {
     Position position = Position.createHiratePosition();
@@ -65,4 +83,61 @@ public class TestPosition {
     Assertions.assertEquals(Color.WHITE, position.getSideToMove());
     Assertions.assertTrue(position.getZobristHash() < 0);
   }
+
+  @Test
+  public void testCopy() {
+    Position position = Position.createHiratePosition();
+    Move move1 = Move.makeMove(Square.SQ_28, Square.SQ_38);
+    Move move2 = Move.makeMove(Square.SQ_82, Square.SQ_72);
+    Move move3 = Move.makeMove(Square.SQ_38, Square.SQ_28);
+    Move move4 = Move.makeMove(Square.SQ_72, Square.SQ_82);
+    for (int i = 0; i < 2; i++) {
+      position.doMove(move1);
+      position.doMove(move2);
+      position.doMove(move3);
+      position.doMove(move4);
+    }
+
+    Position copy = position.copy();
+    Assertions.assertEquals(position.getSfen(), copy.getSfen());
+    Assertions.assertEquals(position.getZobristHash(), copy.getZobristHash());
+    Assertions.assertEquals(move4, copy.getLastMove());
+
+    // the copy keeps the history for the repetition
+    copy.doMove(move1);
+    copy.doMove(move2);
+    copy.doMove(move3);
+    copy.doMove(move4);
+    Assertions.assertTrue(copy.isRepetition());
+    Assertions.assertFalse(position.isRepetition());
+    Assertions.assertEquals(Position.HIRATE_SFEN.replace(" 1", " 9"), position.getSfen());
+
+    // the copy can be undone independently of the original
+    for (int i = 0; i < 12; i++) {
+      copy.undoMove();
+    }
+    Assertions.assertEquals(Move.MOVE_NONE, copy.undoMove());
+    Assertions.assertEquals(Position.HIRATE_SFEN, copy.getSfen());
+    Assertions.assertEquals(move4, position.getLastMove());
+  }
+
+  @Test
+  public void testSnapshot() {
+    Position position = Position.createPositionFromSfen(
+        "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1");
+    PositionSnapshot snapshot = position.snapshot();
+    Assertions.assertEquals(position.getSfen(), snapshot.getSfen());
+    Assertions.assertEquals(position.getZobristHash(), snapshot.getZobristHash());
+
+    Position restored = snapshot.toPosition();
+    Assertions.assertEquals(position.getSfen(), restored.getSfen());
+    Assertions.assertEquals(position.getZobristHash(), restored.getZobristHash());
+    Assertions.assertEquals(position.getLegalMoves(), restored.getLegalMoves());
+    Assertions.assertEquals(snapshot, restored.snapshot());
+
+    // the snapshot is not affected by the moves of the position
+    position.doMove(position.getLegalMoves().get(0));
+    Assertions.assertNotEquals(snapshot, position.snapshot());
+    Assertions.assertEquals(restored.getSfen(), snapshot.getSfen());
+  }
 }
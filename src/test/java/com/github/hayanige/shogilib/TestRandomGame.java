@@ -59,4 +59,43 @@ public class TestRandomGame {
       }
     }
   }
+
+  @Test
+  public void testRandomGameWithAttackMap() {
+    Random random = new Random(9);
+    for (int i = 0; i < 20; i++) {
+      Position position = Position.createHiratePosition();
+      Position reference = Position.createHiratePosition();
+      position.setAttackMapEnabled(true);
+      Assertions.assertTrue(position.isAttackMapEnabled());
+      Assertions.assertFalse(reference.isAttackMapEnabled());
+
+      // the incremental attack map must agree with the attacks computed from scratch
+      do {
+        List<Move> moves = position.getLegalMoves();
+        Assertions.assertEquals(reference.getLegalMoves(), moves);
+        Move move = moves.get(random.nextInt(moves.size()));
+        position.doMove(move);
+        reference.doMove(move);
+        assertSameAttacks(reference, position);
+      } while (!position.isMated() && position.getMoveCounter() < 300);
+
+      while (position.undoMove() != Move.MOVE_NONE) {
+        reference.undoMove();
+        assertSameAttacks(reference, position);
+      }
+    }
+  }
+
+  private static void assertSameAttacks(final Position expected, final Position actual) {
+    Assertions.assertEquals(expected.isKingAttacked(), actual.isKingAttacked());
+    for (Color color : Color.getColors()) {
+      for (Square square : Square.getSquares()) {
+        Assertions.assertEquals(expected.getAttackCount(color, square),
+            actual.getAttackCount(color, square));
+        Assertions.assertEquals(expected.isAttacked(color, square),
+            actual.isAttacked(color, square));
+      }
+    }
+  }
 }
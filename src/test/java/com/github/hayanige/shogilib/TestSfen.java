@@ -4,6 +4,8 @@ import static com.github.hayanige.shogilib.PieceType.BISHOP;
 import static com.github.hayanige.shogilib.Position.HIRATE_SFEN;
 import static com.github.hayanige.shogilib.Square.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -37,6 +39,89 @@ public class TestSfen {
     Assertions.assertEquals(position2.getSfen(), position1.getSfen());
   }
 
+  @Test
+  public void testSfenCharSequence() {
+    String sfen = "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1";
+    ByteBuffer bytes = ByteBuffer.wrap(sfen.getBytes(StandardCharsets.US_ASCII));
+    Position position = Position.createPositionFromSfen(StandardCharsets.US_ASCII.decode(bytes));
+    Assertions.assertEquals(sfen, position.getSfen());
+
+    position = Position.createPositionFromSfen(new StringBuilder(HIRATE_SFEN).append(' '));
+    Assertions.assertEquals(HIRATE_SFEN, position.getSfen());
+  }
+
+  @Test
+  public void testPromotedKnight() {
+    // both the standard notation and the notation of getSfen() are accepted
+    Position position1 = Position.createPositionFromSfen("4k4/9/9/9/9/9/9/+N8/4K4 b - 1");
+    Position position2 = Position.createPositionFromSfen("4k4/9/9/9/9/9/9/+K8/4K4 b - 1");
+    Assertions.assertEquals(Piece.B_PRO_KNIGHT, position1.getPiece(SQ_98));
+    Assertions.assertEquals(position1.getSfen(), position2.getSfen());
+  }
+
+  @Test
+  public void testSetSfen() {
+    String sfen = "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1";
+    Position expected = Position.createPositionFromSfen(sfen);
+    Position position = Position.createHiratePosition();
+    position.setAttackMapEnabled(true);
+    position.doMove(Move.makeMove(SQ_77, SQ_76));
+    position.doMove(Move.makeMove(SQ_33, SQ_34));
+
+    position.setSfen(sfen);
+    Assertions.assertEquals(sfen, position.getSfen());
+    Assertions.assertEquals(expected.getZobristHash(), position.getZobristHash());
+    Assertions.assertEquals(expected.getLegalMoves(), position.getLegalMoves());
+    Assertions.assertEquals(Move.MOVE_NONE, position.getLastMove());
+    Assertions.assertEquals(Move.MOVE_NONE, position.undoMove());
+    Assertions.assertTrue(position.isAttackMapEnabled());
+    for (Color color : Color.getColors()) {
+      for (Square square : Square.getSquares()) {
+        Assertions.assertEquals(expected.getAttackCount(color, square),
+            position.getAttackCount(color, square));
+      }
+    }
+
+    // an invalid SFEN clears the position, which is still reusable
+    Assertions.assertThrows(IllegalArgumentException.class, () -> position.setSfen("9/9 b - 1"));
+    Assertions.assertEquals("9/9/9/9/9/9/9/9/9 b - 1", position.getSfen());
+    position.reset();
+    Assertions.assertEquals(HIRATE_SFEN, position.getSfen());
+    Assertions.assertEquals(Position.createHiratePosition().getZobristHash(),
+        position.getZobristHash());
+  }
+
+  @Test
+  public void testWriteSfen() throws Exception {
+    String sfen = "R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b RBGSNLP3g3n17p 123";
+    Position position = Position.createPositionFromSfen(sfen);
+
+    byte[] buffer = new byte[Position.MAX_SFEN_LENGTH + 1];
+    int length = position.writeSfen(buffer, 1);
+    Assertions.assertEquals(sfen, new String(buffer, 1, length, StandardCharsets.US_ASCII));
+
+    ByteBuffer byteBuffer = ByteBuffer.allocate(Position.MAX_SFEN_LENGTH);
+    position.writeSfen(byteBuffer);
+    Assertions.assertEquals(sfen, new String(byteBuffer.array(), 0, byteBuffer.position(),
+        StandardCharsets.US_ASCII));
+
+    StringBuilder sb = new StringBuilder();
+    position.writeSfen(sb);
+    Assertions.assertEquals(sfen, sb.toString());
+
+    // the cached SFEN is updated by changes of the position
+    Assertions.assertSame(position.getSfen(), position.getSfen());
+    position.doMove(Move.makeMoveDrop(PieceType.PAWN, SQ_55));
+    Assertions.assertEquals("R8/2K1S1SSk/4B4/9/4P4/9/9/9/1L1L1L3 w RBGSNL3g3n17p 124",
+        position.getSfen());
+    position.undoMove();
+    Assertions.assertEquals(sfen, position.getSfen());
+    position.unsetPiece(SQ_91);
+    position.addPieceToHand(Color.WHITE, PieceType.ROOK);
+    Assertions.assertEquals("9/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b RBGSNLPr3g3n17p 123",
+        position.getSfen());
+  }
+
   @Test
   public void testInvalidSfen() {
     Exception exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
@@ -66,5 +151,25 @@ public class TestSfen {
     exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
         Position.createPositionFromSfen("R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b RBGSNLP3g3n17p a"));
     Assertions.assertTrue(exception.getMessage().contains("The next move number is invalid."));
+
+    exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
+        Position.createPositionFromSfen("R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b RBGSNLP3g3n17p 1 1"));
+    Assertions.assertTrue(exception.getMessage().contains("The number of elements is not enough."));
+
+    exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
+        Position.createPositionFromSfen("R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b +G 1"));
+    Assertions.assertTrue(exception.getMessage().contains("The hand is invalid."));
+
+    exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
+        Position.createPositionFromSfen("R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b 3 1"));
+    Assertions.assertTrue(exception.getMessage().contains("The hand is invalid."));
+
+    exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
+        Position.createPositionFromSfen("R8/2K1S1SSk/4B4/9/9/9/9/8+G/1L1L1L3 b - 1"));
+    Assertions.assertTrue(exception.getMessage().contains("A piece is invalid."));
+
+    exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
+        Position.createPositionFromSfen("R8/2K1S1SSk/4B4/9/9/9/9/55/1L1L1L3 b - 1"));
+    Assertions.assertTrue(exception.getMessage().contains("The number of pieces is not enough."));
   }
 }
@@ -0,0 +1,127 @@
+package com.github.hayanige.shogilib;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestUsiRecordReader {
+
+  @Test
+  public void testEncodeMoveUSI() {
+    Assertions.assertEquals(Move.makeMove(Square.SQ_77, Square.SQ_76),
+        Move.valueOf(Move.encodeMoveUSI("moves 7g7f", 6, 10)));
+    Assertions.assertEquals(Move.makeMovePromote(Square.SQ_88, Square.SQ_22),
+        Move.makeMoveUSI("8h2b+"));
+    Assertions.assertEquals(Move.makeMoveDrop(PieceType.PAWN, Square.SQ_55),
+        Move.makeMoveUSI("P*5e"));
+    Assertions.assertEquals(Move.makeMoveDrop(PieceType.ROOK, Square.SQ_11),
+        Move.makeMoveUSI("r*1a"));
+
+    for (String usi : new String[] {"", "7g7", "7g7f*", "7g7f++", "7g7g", "0a1a", "7j7f", "K*5e",
+        "+P*5e", "X*5e", "P*5e+"}) {
+      Assertions.assertEquals(Move.MOVE_NONE, Move.makeMoveUSI(usi), usi);
+    }
+  }
+
+  @Test
+  public void testRead() {
+    UsiRecordReader reader = new UsiRecordReader();
+    Position position = reader.read("position startpos moves 7g7f 3c3d 8h2b+ 3a2b B*4e");
+
+    Position expected = Position.createHiratePosition();
+    expected.doMove(Move.makeMove(Square.SQ_77, Square.SQ_76));
+    expected.doMove(Move.makeMove(Square.SQ_33, Square.SQ_34));
+    expected.doMove(Move.makeMovePromote(Square.SQ_88, Square.SQ_22));
+    expected.doMove(Move.makeMove(Square.SQ_31, Square.SQ_22));
+    expected.doMove(Move.makeMoveDrop(PieceType.BISHOP, Square.SQ_45));
+    Assertions.assertSame(reader.getPosition(), position);
+    Assertions.assertEquals(expected.getSfen(), position.getSfen());
+    Assertions.assertEquals(expected.getZobristHash(), position.getZobristHash());
+
+    // the position is reused
+    Assertions.assertSame(position, reader.read("startpos"));
+    Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+    Assertions.assertEquals(Move.MOVE_NONE, position.getLastMove());
+
+    String sfen = "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1";
+    reader.read("sfen " + sfen + "\r");
+    Assertions.assertEquals(sfen, position.getSfen());
+    reader.read("position sfen " + sfen + " moves G*2c");
+    Assertions.assertEquals(Piece.W_GOLD, position.getPiece(Square.SQ_23));
+  }
+
+  @Test
+  public void testHandler() {
+    Random random = new Random(19);
+    Position position = Position.createHiratePosition();
+    StringBuilder line = new StringBuilder("position startpos moves");
+    List<String> sfens = new ArrayList<>();
+    List<Move> moves = new ArrayList<>();
+    while (!position.isMated() && position.getMoveCounter() < 200) {
+      List<Move> legalMoves = position.getLegalMoves();
+      Move move = legalMoves.get(random.nextInt(legalMoves.size()));
+      sfens.add(position.getSfen());
+      moves.add(move);
+      line.append(' ').append(move.isDrop()
+          ? move.getPieceType().getColoredPiece(Color.BLACK) + "*" + move.getToSquare()
+          : move.toString());
+      position.doMove(move);
+    }
+    sfens.add(position.getSfen());
+    moves.add(Move.MOVE_NONE);
+
+    List<String> actualSfens = new ArrayList<>();
+    List<Move> actualMoves = new ArrayList<>();
+    new UsiRecordReader().read(line, (p, move) -> {
+      actualSfens.add(p.getSfen());
+      actualMoves.add(move);
+    });
+    Assertions.assertEquals(sfens, actualSfens);
+    Assertions.assertEquals(moves, actualMoves);
+  }
+
+  @Test
+  public void testReadByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.wrap(("position startpos moves 7g7f\n\n"
+        + "position startpos moves 7g7f 3c3d 7f7e\r\n"
+        + "position startpos moves 7g7e\n"
+        + "startpos moves 2g2f").getBytes(StandardCharsets.US_ASCII));
+    UsiRecordReader reader = new UsiRecordReader();
+    Assertions.assertEquals(Piece.B_PAWN, reader.read(buffer, null).getPiece(Square.SQ_76));
+    Assertions.assertEquals(Piece.B_PAWN, reader.read(buffer, null).getPiece(Square.SQ_75));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> reader.read(buffer, null));
+    Assertions.assertEquals(Piece.B_PAWN, reader.read(buffer, null).getPiece(Square.SQ_26));
+    Assertions.assertNull(reader.read(buffer, null));
+  }
+
+  @Test
+  public void testReadPacked() {
+    ByteBuffer out = ByteBuffer.allocate(PackedSfen.BYTES * 4);
+    UsiRecordReader reader = new UsiRecordReader();
+    Assertions.assertEquals(3, reader.readPacked("position startpos moves 7g7f 3c3d", out));
+    Assertions.assertEquals(PackedSfen.BYTES * 3, out.position());
+    Assertions.assertEquals(reader.getPosition().getSfen().replace(" 3", " 1"),
+        PackedSfen.decode(out.array(), PackedSfen.BYTES * 2).getSfen());
+  }
+
+  @Test
+  public void testInvalid() {
+    UsiRecordReader reader = new UsiRecordReader();
+    for (String line : new String[] {
+        "",
+        "position",
+        "position moves 7g7f",
+        "position startpos 7g7f",
+        "position startpos moves 7g7x",
+        "position startpos moves 7g7e",
+        "position startpos moves 7g7f 7f7e",
+        "position startpos moves 7g7f 3c3d P*5e",
+        "position sfen moves 7g7f"}) {
+      Assertions.assertThrows(IllegalArgumentException.class, () -> reader.read(line), line);
+    }
+  }
+}
@@ -44,4 +44,15 @@ public class TestZobristHash {
     long hash2 = position.getZobristHash();
     Assertions.assertNotEquals(hash1, hash2);
   }
+
+  @Test
+  public void testZobristUndoAfterEdit() {
+    Position position = Position.createHiratePosition();
+    position.addPieceToHand(Color.BLACK, PieceType.GOLD);
+    long hash = position.getZobristHash();
+
+    position.doMove(Move.makeMoveDrop(PieceType.GOLD, Square.SQ_55));
+    position.undoMove();
+    Assertions.assertEquals(hash, position.getZobristHash());
+  }
 }
@@ -0,0 +1,218 @@
+package com.github.hayanige.shogilib.kifu;
+
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.PackedSfen;
+import com.github.hayanige.shogilib.Piece;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.Square;
+import com.github.hayanige.shogilib.UsiRecordReader;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestKifu {
+
+  private static final String USI = "position startpos moves 7g7f 3c3d 8h2b+ 3a2b B*4e";
+
+  private static final String CSA = String.join("\n",
+      "V2.2",
+      "N+Sente",
+      "N-Gote",
+      "$EVENT:test",
+      "P1-KY-KE-GI-KI-OU-KI-GI-KE-KY",
+      "P2 * -HI *  *  *  *  * -KA * ",
+      "P3-FU-FU-FU-FU-FU-FU-FU-FU-FU",
+      "P4 *  *  *  *  *  *  *  *  * ",
+      "P5 *  *  *  *  *  *  *  *  * ",
+      "P6 *  *  *  *  *  *  *  *  * ",
+      "P7+FU+FU+FU+FU+FU+FU+FU+FU+FU",
+      "P8 * +KA *  *  *  *  * +HI * ",
+      "P9+KY+KE+GI+KI+OU+KI+GI+KE+KY",
+      "+",
+      "+7776FU",
+      "T1",
+      "-3334FU",
+      "T2",
+      "'comment",
+      "+8822UM,T3",
+      "-3122GI",
+      "+0045KA",
+      "%TORYO",
+      "/",
+      "PI82HI",
+      "-",
+      "-3334FU",
+      "+7776FU",
+      "%CHUDAN",
+      "");
+
+  private static final String KIF = String.join("\n",
+      "# ---- Kifu for Windows V7 ----",
+      "開始日時：2024/01/01 10:00:00",
+      "手合割：平手",
+      "先手：先手",
+      "後手：後手",
+      "手数----指手---------消費時間--",
+      "   1 ７六歩(77)   ( 0:01/00:00:01)",
+      "   2 ３四歩(33)   ( 0:01/00:00:02)",
+      "   3 ２二角成(88) ( 0:01/00:00:03)",
+      "*comment",
+      "   4 同　銀(31)   ( 0:01/00:00:04)",
+      "   5 ４五角打     ( 0:01/00:00:05)",
+      "   6 投了         ( 0:01/00:00:06)",
+      "まで5手で先手の勝ち",
+      "",
+      "変化：3手",
+      "   3 ６六歩(67)   ( 0:01/00:00:03)",
+      "");
+
+  @Test
+  public void testCsa() throws Exception {
+    CsaParser parser = new CsaParser();
+    GameRecord record = parser.parse(CSA);
+    Assertions.assertEquals(Position.HIRATE_SFEN, record.getInitialSfen());
+    Assertions.assertEquals(5, record.getNumberOfMoves());
+    Assertions.assertEquals(Move.makeMovePromote(Square.SQ_88, Square.SQ_22), record.getMove(2));
+    Assertions.assertEquals(USI, record.toUsi());
+    Assertions.assertEquals(new UsiRecordReader().read(USI).getSfen(),
+        record.toPosition().getSfen());
+
+    // the games separated by "/"
+    BufferedReader reader = new BufferedReader(new StringReader(CSA));
+    Assertions.assertEquals(record, parser.parse(reader));
+    GameRecord handicap = parser.parse(reader);
+    Assertions.assertEquals("lnsgkgsnl/7b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL w - 1",
+        handicap.getInitialSfen());
+    Assertions.assertEquals(List.of(Move.makeMove(Square.SQ_33, Square.SQ_34),
+        Move.makeMove(Square.SQ_77, Square.SQ_76)), handicap.getMoves());
+    Assertions.assertNull(parser.parse(reader));
+  }
+
+  @Test
+  public void testCsaHand() {
+    GameRecord record = new CsaParser().parse(String.join("\n",
+        "P1 *  *  *  *  *  *  * -KE-KY",
+        "P2 *  *  *  *  *  *  * -OU * ",
+        "P3 *  *  *  *  *  *  *  *  * ",
+        "P4 *  *  *  *  *  *  * +FU+KE",
+        "P+59OU",
+        "P+00KI",
+        "P-00AL",
+        "+",
+        "+0023KI"));
+    Assertions.assertEquals("7nl/7k1/9/7PN/9/9/9/9/4K4 b G2r2b3g4s2n3l17p 1",
+        record.getInitialSfen());
+    Assertions.assertEquals(Piece.B_GOLD, record.toPosition().getPiece(Square.SQ_23));
+  }
+
+  @Test
+  public void testKif() {
+    KifParser parser = new KifParser();
+    GameRecord record = parser.parse(KIF);
+    Assertions.assertEquals(USI, record.toUsi());
+
+    GameRecord handicap = parser.parse(String.join("\n",
+        "手合割：香落ち",
+        "   1 ３四歩(33)",
+        "   2 ７六歩(77)",
+        "   3 中断"));
+    Assertions.assertEquals("lnsgkgsn1/1r5b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL w - 1",
+        handicap.getInitialSfen());
+    Assertions.assertEquals(2, handicap.getNumberOfMoves());
+  }
+
+  @Test
+  public void testKifBoard() {
+    GameRecord record = new KifParser().parse(String.join("\n",
+        "後手の持駒：なし",
+        "  ９ ８ ７ ６ ５ ４ ３ ２ １",
+        "+---------------------------+",
+        "| ・ ・ ・ ・ ・ ・ ・v桂v香|一",
+        "| ・ ・ ・ ・ ・ ・ ・v玉 ・|二",
+        "| ・ ・ ・ ・ ・ ・ ・ ・ ・|三",
+        "| ・ ・ ・ ・ ・ ・ ・ 歩 桂|四",
+        "| ・ ・ ・ ・ ・ ・ ・ ・ ・|五",
+        "| ・ ・ ・ ・ ・ ・ ・ ・ ・|六",
+        "| ・ ・ ・ ・ ・ ・ ・ ・ ・|七",
+        "| ・ ・ ・ ・ ・ ・ ・ ・ ・|八",
+        "| ・ ・ ・ ・ 玉 ・ ・ ・ ・|九",
+        "+---------------------------+",
+        "先手の持駒：金　歩十七",
+        "先手番",
+        "手数----指手---------消費時間--",
+        "   1 ２三金打",
+        "   2 投了"));
+    Assertions.assertEquals("7nl/7k1/9/7PN/9/9/9/9/4K4 b G17P 1", record.getInitialSfen());
+    Assertions.assertEquals(Piece.B_GOLD, record.toPosition().getPiece(Square.SQ_23));
+  }
+
+  @Test
+  public void testInvalid() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new CsaParser().parse("PI\n+\n+7775FU"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new CsaParser().parse("PI\n+\n-3334FU"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new CsaParser().parse("PI\n+\n+7776TO"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new CsaParser().parse("PI\n+\n+0055KA"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new KifParser().parse("   1 ７五歩(77)"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new KifParser().parse("   1 同　歩(77)"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new KifParser().parse("   1 ７六香(77)"));
+  }
+
+  @Test
+  public void testCorpusLoader(@TempDir final Path directory) throws Exception {
+    Files.writeString(directory.resolve("a.csa"), CSA);
+    Files.writeString(directory.resolve("b.kifu"), KIF);
+    Files.createDirectory(directory.resolve("sub"));
+    Files.writeString(directory.resolve("sub").resolve("c.kif"), KIF,
+        Charset.forName("windows-31j"));
+    Files.writeString(directory.resolve("ignored.txt"), "ignored");
+
+    List<GameRecord> records = new CopyOnWriteArrayList<>();
+    Assertions.assertEquals(4, new CorpusLoader(2, null).load(directory, records::add));
+    Assertions.assertEquals(4, records.size());
+    Assertions.assertEquals(3, records.stream().filter(r -> r.toUsi().equals(USI)).count());
+
+    // the handicap game is not written
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Assertions.assertEquals(18, new CorpusLoader().writePackedSfens(directory, out));
+    Assertions.assertEquals(18 * PackedSfen.BYTES, out.size());
+
+    Files.writeString(directory.resolve("d.csa"), "PI\n+\n+7775FU", StandardCharsets.UTF_8);
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new CorpusLoader(2, null).load(directory, records::add));
+    List<Path> errors = new CopyOnWriteArrayList<>();
+    Assertions.assertEquals(4, new CorpusLoader(3, (file, e) -> errors.add(file))
+        .load(directory, record -> { }));
+    Assertions.assertEquals(List.of(directory.resolve("d.csa")), errors);
+  }
+
+  @Test
+  public void testCorpusLoaderError(@TempDir final Path directory) throws Exception {
+    // more files than the queue holds
+    for (int i = 0; i < 40; i++) {
+      Files.writeString(directory.resolve(i + ".csa"), CSA);
+    }
+    // the loading doesn't hang even if all the workers die
+    Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+        Assertions.assertThrows(OutOfMemoryError.class, () -> new CorpusLoader(2, null)
+            .load(directory, record -> {
+              throw new OutOfMemoryError("test");
+            })));
+  }
+}
@@ -0,0 +1,351 @@
+package com.github.hayanige.shogilib.search;
+
+import com.github.hayanige.shogilib.Hand;
+import com.github.hayanige.shogilib.Move;
+import com.github.hayanige.shogilib.PieceType;
+import com.github.hayanige.shogilib.Position;
+import com.github.hayanige.shogilib.Square;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestSearch {
+
+  @Test
+  public void testMaterialEvaluator() {
+    MaterialEvaluator evaluator = new MaterialEvaluator();
+    Position position = Position.createHiratePosition();
+    Assertions.assertEquals(0, evaluator.evaluate(position));
+
+    position = Position.createPositionFromSfen("4k4/9/9/9/9/9/9/9/4K4 w R2p 1");
+    Assertions.assertEquals(-990 + 180, evaluator.evaluate(position));
+  }
+
+  @Test
+  public void testMateInOne() {
+    Position position = Position.createPositionFromSfen("4k4/9/4P4/9/9/9/9/9/4K4 b G 1");
+    SearchResult result = new Searcher().search(position, SearchLimits.depth(5));
+    Assertions.assertEquals(Move.makeMoveDrop(PieceType.GOLD, Square.SQ_52), result.getBestMove());
+    Assertions.assertEquals(Searcher.MATE - 1, result.getScore());
+    Assertions.assertTrue(result.toString().contains("score mate 1"));
+    Assertions.assertEquals("4k4/9/4P4/9/9/9/9/9/4K4 b G 1", position.getSfen());
+
+    // mated
+    position.doMove(result.getBestMove());
+    result = new Searcher().search(position, SearchLimits.depth(5));
+    Assertions.assertEquals(Move.MOVE_RESIGN, result.getBestMove());
+    Assertions.assertEquals(-Searcher.MATE, result.getScore());
+  }
+
+  @Test
+  public void testCapture() {
+    Position position = Position.createPositionFromSfen("4k4/9/9/9/4r4/9/9/4R4/4K4 b - 1");
+    SearchResult result = new Searcher().search(position, SearchLimits.depth(3));
+    Assertions.assertEquals(Move.makeMove(Square.SQ_58, Square.SQ_55), result.getBestMove());
+    Assertions.assertEquals(3, result.getDepth());
+    Assertions.assertTrue(result.getScore() > 900);
+    Assertions.assertEquals(result.getBestMove(), result.getPv().get(0));
+  }
+
+  @Test
+  public void testLimits() {
+    Position position = Position.createHiratePosition();
+    Searcher searcher = new Searcher();
+    SearchResult result = searcher.search(position, SearchLimits.depth(3));
+    Assertions.assertEquals(3, result.getDepth());
+    Assertions.assertTrue(position.getLegalMoves().contains(result.getBestMove()));
+    Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+    Assertions.assertEquals(result.getNodes(), searcher.getNodes());
+
+    result = searcher.search(position, SearchLimits.nodes(20000));
+    Assertions.assertEquals(20000, result.getNodes());
+    Assertions.assertTrue(position.getLegalMoves().contains(result.getBestMove()));
+
+    long start = System.currentTimeMillis();
+    result = searcher.search(position, SearchLimits.timeMillis(200));
+    Assertions.assertTrue(System.currentTimeMillis() - start < 2000);
+    Assertions.assertTrue(result.getDepth() >= 1);
+    Assertions.assertTrue(result.getNps() > 0);
+    Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+  }
+
+  @Test
+  public void testStop() throws Exception {
+    Position position = Position.createHiratePosition();
+    Searcher searcher = new Searcher();
+    Thread thread = new Thread(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      searcher.stop();
+    });
+    thread.start();
+    SearchResult result = searcher.search(position, SearchLimits.INFINITE);
+    thread.join();
+    Assertions.assertTrue(position.getLegalMoves().contains(result.getBestMove()));
+    Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+  }
+
+  @Test
+  public void testTranspositionTable() {
+    TranspositionTable table = new TranspositionTable(1);
+    Assertions.assertEquals(1024 * 1024, table.getSizeBytes());
+    long key = Position.createHiratePosition().getZobristHash();
+    Assertions.assertEquals(0, table.probe(key));
+
+    int move = Move.makeMovePromote(Square.SQ_88, Square.SQ_22).toInt();
+    table.store(key, move, -Searcher.MATE + 3, 12, TranspositionTable.BOUND_LOWER);
+    long data = table.probe(key);
+    Assertions.assertEquals(move, TranspositionTable.getMove(data));
+    Assertions.assertEquals(-Searcher.MATE + 3, TranspositionTable.getScore(data));
+    Assertions.assertEquals(12, TranspositionTable.getDepth(data));
+    Assertions.assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.getBound(data));
+    Assertions.assertEquals(0, table.probe(key ^ 1L << 40));
+
+    // the best move is kept if the new entry doesn't have it
+    table.store(key, 0, 5, 3, TranspositionTable.BOUND_UPPER);
+    data = table.probe(key);
+    Assertions.assertEquals(move, TranspositionTable.getMove(data));
+    Assertions.assertEquals(5, TranspositionTable.getScore(data));
+
+    // the shallowest entry is replaced when the bucket is full
+    for (int i = 1; i <= 4; i++) {
+      table.store(key + ((long) i << 32), 0, 0, 10 + i, TranspositionTable.BOUND_EXACT);
+    }
+    Assertions.assertEquals(0, table.probe(key));
+    Assertions.assertNotEquals(0, table.probe(key + (4L << 32)));
+
+    table.clear();
+    Assertions.assertEquals(0, table.probe(key + (4L << 32)));
+  }
+
+  @Test
+  public void testConcurrentTable() throws Exception {
+    TranspositionTable table = new TranspositionTable(1);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      long seed = t;
+      threads[t] = new Thread(() -> {
+        Random random = new Random(seed % 2);
+        for (int i = 0; i < 200000; i++) {
+          long key = random.nextLong();
+          // the data is derived from the key, so a torn entry would be detected
+          table.store(key, (int) key & 0xffff, (short) (key >>> 16), 1,
+              TranspositionTable.BOUND_EXACT);
+          table.probe(random.nextLong());
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Random random = new Random(0);
+    for (int i = 0; i < 200000; i++) {
+      long key = random.nextLong();
+      long data = table.probe(key);
+      if (data != 0) {
+        Assertions.assertEquals((int) key & 0xffff, TranspositionTable.getMove(data));
+        Assertions.assertEquals((short) (key >>> 16), TranspositionTable.getScore(data));
+      }
+    }
+  }
+
+  @Test
+  public void testSharedTable() {
+    TranspositionTable table = new TranspositionTable(1);
+    Position position = Position.createPositionFromSfen(
+        "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1");
+    SearchResult first = new Searcher(new MaterialEvaluator(), table)
+        .search(position, SearchLimits.depth(3));
+    Assertions.assertTrue(table.getHashfull() > 0);
+    SearchResult second = new Searcher(new MaterialEvaluator(), table)
+        .search(position, SearchLimits.depth(3));
+    // the second search reuses the entries stored by the first one
+    Assertions.assertTrue(second.getNodes() < first.getNodes());
+    Assertions.assertTrue(position.getLegalMoves().contains(second.getBestMove()));
+  }
+
+  @Test
+  public void testLazySmp() {
+    try (LazySmpSearcher searcher = new LazySmpSearcher(4, new MaterialEvaluator(),
+        new TranspositionTable(4))) {
+      Assertions.assertEquals(4, searcher.getThreads());
+      Position position = Position.createPositionFromSfen("4k4/9/4P4/9/9/9/9/9/4K4 b G 1");
+      SearchResult result = searcher.search(position, SearchLimits.depth(5));
+      Assertions.assertEquals(Move.makeMoveDrop(PieceType.GOLD, Square.SQ_52),
+          result.getBestMove());
+      Assertions.assertEquals(Searcher.MATE - 1, result.getScore());
+      Assertions.assertEquals("4k4/9/4P4/9/9/9/9/9/4K4 b G 1", position.getSfen());
+
+      position = Position.createHiratePosition();
+      result = searcher.search(position, SearchLimits.depth(4));
+      Assertions.assertEquals(4, result.getDepth());
+      Assertions.assertTrue(position.getLegalMoves().contains(result.getBestMove()));
+      Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+      Assertions.assertTrue(searcher.getTranspositionTable().getHashfull() > 0);
+
+      // the nodes of all the threads are counted
+      result = searcher.search(position, SearchLimits.nodes(100000));
+      Assertions.assertTrue(result.getNodes() >= 100000);
+      Assertions.assertTrue(result.getNodes() < 100000 + 4 * 1024 * 2);
+      Assertions.assertTrue(position.getLegalMoves().contains(result.getBestMove()));
+    }
+  }
+
+  @Test
+  public void testLazySmpStop() throws Exception {
+    try (LazySmpSearcher searcher = new LazySmpSearcher(3, new MaterialEvaluator(),
+        new TranspositionTable(4))) {
+      Position position = Position.createHiratePosition();
+      Thread thread = new Thread(() -> {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        searcher.stop();
+      });
+      thread.start();
+      SearchResult result = searcher.search(position, SearchLimits.INFINITE);
+      thread.join();
+      Assertions.assertTrue(position.getLegalMoves().contains(result.getBestMove()));
+      Assertions.assertEquals(Position.HIRATE_SFEN, position.getSfen());
+
+      long start = System.currentTimeMillis();
+      result = searcher.search(position, SearchLimits.timeMillis(200));
+      Assertions.assertTrue(System.currentTimeMillis() - start < 2000);
+      Assertions.assertTrue(result.getDepth() >= 1);
+    }
+  }
+
+  @Test
+  public void testBatchAnalyzer() throws Exception {
+    List<CompletableFuture<SearchResult>> results;
+    try (BatchAnalyzer analyzer = new BatchAnalyzer(2, new MaterialEvaluator(), 1)) {
+      results = analyzer.analyze(Stream.of(
+          "4k4/9/4P4/9/9/9/9/9/4K4 b G 1",
+          "4k4/9/9/9/4r4/9/9/4R4/4K4 b - 1",
+          "invalid",
+          Position.HIRATE_SFEN), SearchLimits.depth(3));
+    }
+    Assertions.assertEquals(4, results.size());
+    Assertions.assertEquals(Move.makeMoveDrop(PieceType.GOLD, Square.SQ_52),
+        results.get(0).get().getBestMove());
+    Assertions.assertEquals(Move.makeMove(Square.SQ_58, Square.SQ_55),
+        results.get(1).get().getBestMove());
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> results.get(2).get());
+    Assertions.assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    CompletionException completion = Assertions.assertThrows(CompletionException.class,
+        () -> results.get(2).join());
+    Assertions.assertInstanceOf(IllegalArgumentException.class, completion.getCause());
+    Assertions.assertEquals(3, results.get(3).get().getDepth());
+  }
+
+  @Test
+  public void testHandDominance() {
+    Hand pawnHand = new Hand();
+    pawnHand.add(PieceType.PAWN);
+    int pawn = pawnHand.toInt();
+    Hand hand = new Hand();
+    hand.add(PieceType.GOLD);
+    hand.add(PieceType.PAWN);
+    hand.add(PieceType.PAWN);
+    Hand other = new Hand();
+    other.add(PieceType.GOLD);
+    other.add(PieceType.ROOK);
+    Assertions.assertTrue(ProofTable.dominates(hand.toInt(), hand.toInt()));
+    Assertions.assertTrue(ProofTable.dominates(hand.toInt(), pawn));
+    Assertions.assertFalse(ProofTable.dominates(pawn, hand.toInt()));
+    Assertions.assertFalse(ProofTable.dominates(hand.toInt(), other.toInt()));
+    Assertions.assertFalse(ProofTable.dominates(other.toInt(), hand.toInt()));
+
+    Hand max = Hand.valueOf(ProofTable.max(hand.toInt(), other.toInt()));
+    Assertions.assertEquals(2, max.count(PieceType.PAWN));
+    Assertions.assertEquals(1, max.count(PieceType.GOLD));
+    Assertions.assertEquals(1, max.count(PieceType.ROOK));
+    Assertions.assertEquals(Hand.valueOf(pawn * 2).toInt(),
+        ProofTable.lacking(hand.toInt(), other.toInt()));
+
+    // a proof is found with a superior hand, and a disproof with an inferior hand
+    ProofTable table = new ProofTable(1);
+    table.store(1L, hand.toInt(), 0, Integer.MAX_VALUE / 2, 3, 10);
+    table.store(2L, hand.toInt(), Integer.MAX_VALUE / 2, 0, 5, 10);
+    Assertions.assertTrue(table.find(1L, max.toInt(), 3) >= 0);
+    Assertions.assertEquals(-1, table.find(1L, other.toInt(), 3));
+    Assertions.assertTrue(table.find(2L, pawn, 5) >= 0);
+    Assertions.assertEquals(-1, table.find(2L, max.toInt(), 5));
+
+    // a proof longer than the depth and a disproof shorter than the depth are ignored
+    Assertions.assertEquals(-1, table.find(1L, max.toInt(), 1));
+    Assertions.assertEquals(-1, table.find(2L, pawn, 7));
+  }
+
+  @Test
+  public void testDfpnSolver() {
+    DfpnSolver solver = new DfpnSolver(16);
+    String[] sfens = {
+        // mate in 1 without the attacker's king
+        "4k4/9/4P4/9/9/9/9/9/9 b G2r2b3g4s4n4l17p 1",
+        // the defender has all the other pieces to interpose
+        "1g6+p/9/6bk1/1s+pp3n1/8R/9/9/9/9 b RBGP2g3s3n4l14p 1",
+        "3p5/4b1l2/6Ssk/1+R2n2r1/9/N8/9/9/9 b R2SL 1",
+        // The dragon chases the king back and forth, so the positions of the mate are also
+        // reached on the paths repeating a position. They were disproven on such a path and the
+        // disproof was reused on the others.
+        "2k6/7p1/6b2/4S4/9/4+R3+B/9/S8/9 b P 1",
+        // the numbers of the positions reached by many paths overflowed
+        "5k3/9/l7B/8l/8P/9/+R8/8B/9 b - 1",
+    };
+    for (String sfen : sfens) {
+      Position position = Position.createPositionFromSfen(sfen);
+      MateResult result = solver.solve(position, SearchLimits.nodes(1000000));
+      Assertions.assertTrue(result.isMate(), sfen);
+      Assertions.assertEquals(sfen, position.getSfen());
+
+      // the attacker checks at every move and the defender is mated at the end
+      List<Move> pv = result.getPv();
+      Assertions.assertEquals(1, pv.size() % 2);
+      for (int i = 0; i < pv.size(); i++) {
+        Assertions.assertTrue(position.getLegalMoves().contains(pv.get(i)));
+        position.doMove(pv.get(i));
+        Assertions.assertTrue(i % 2 == 1 || position.isKingAttacked());
+      }
+      Assertions.assertTrue(position.isMated());
+    }
+
+    Position position = Position.createPositionFromSfen(sfens[0]);
+    Assertions.assertEquals(List.of(Move.makeMoveDrop(PieceType.GOLD, Square.SQ_52)),
+        solver.solve(position, SearchLimits.INFINITE).getPv());
+
+    // the only check is the pawn drop captured by the king
+    position = Position.createPositionFromSfen("4k4/9/9/9/9/9/9/9/4K4 b P2r2b4g4s4n4l16p 1");
+    MateResult result = solver.solve(position, SearchLimits.INFINITE);
+    Assertions.assertEquals(MateResult.Status.NO_MATE, result.getStatus());
+    Assertions.assertTrue(result.getPv().isEmpty());
+
+    // the king escapes
+    position = Position.createPositionFromSfen("4k4/9/9/9/9/9/9/9/4K4 b G2r2b3g4s4n4l18p 1");
+    Assertions.assertEquals(MateResult.Status.NO_MATE,
+        solver.solve(position, SearchLimits.INFINITE).getStatus());
+
+    // the depth limits the length of the mate
+    position = Position.createPositionFromSfen(sfens[2]);
+    Assertions.assertEquals(MateResult.Status.NO_MATE,
+        solver.solve(position, SearchLimits.depth(7)).getStatus());
+    MateResult limited = solver.solve(position, SearchLimits.depth(25));
+    Assertions.assertTrue(limited.isMate());
+    Assertions.assertTrue(limited.getPv().size() <= 25);
+    Assertions.assertEquals(MateResult.Status.UNKNOWN,
+        solver.solve(position, SearchLimits.nodes(100)).getStatus());
+    Assertions.assertEquals(sfens[2], position.getSfen());
+  }
+}